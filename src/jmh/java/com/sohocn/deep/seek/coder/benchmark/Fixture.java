@@ -0,0 +1,185 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.Gson;
+
+/**
+ * 基准测试用的流式响应样本，按固定种子生成，每次运行的内容完全相同。
+ * <p>
+ * 格式与 DeepSeek 接口的实际响应一致：每个分片是一个 chat.completion.chunk，包含 1 到 5 个字符，
+ * 最后一个分片带 finish_reason 和 usage，流以 [DONE] 结束。
+ */
+public enum Fixture {
+    // 几百字的普通对话
+    SHORT_CHAT("deepseek-chat", 0, 600, false),
+    // 以大段代码为主的回答，约 20 KB
+    CODE_ANSWER("deepseek-chat", 0, 20 * 1024, true),
+    // R1 的长推理过程加上简短的回答
+    REASONING_TRACE("deepseek-reasoner", 48 * 1024, 2 * 1024, false);
+
+    private final String model;
+    private final String reasoning;
+    private final String answer;
+    private final List<String> deltas = new ArrayList<>();
+    private final byte[] sse;
+
+    Fixture(String model, int reasoningSize, int answerSize, boolean code) {
+        Random random = new Random(ordinal() + 1);
+
+        this.model = model;
+        this.reasoning = reasoningSize > 0 ? Generator.prose(random, reasoningSize) : null;
+        this.answer = code ? Generator.codeAnswer(random, answerSize) : Generator.prose(random, answerSize);
+        this.sse = encode(random);
+    }
+
+    // 完整的 SSE 响应体
+    public byte[] getSse() {
+        return sse;
+    }
+
+    // 按顺序送到界面的内容分片，推理过程在前
+    public List<String> getDeltas() {
+        return Collections.unmodifiableList(deltas);
+    }
+
+    // 界面上最终显示的完整文本
+    public String getText() {
+        return reasoning == null ? answer : reasoning + answer;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    private byte[] encode(Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String id = "bench-" + name().toLowerCase();
+
+        // 服务端排队时会先发送注释行保持连接
+        write(out, ": keep-alive\n\n");
+        write(out, chunk(id, "\"role\":\"assistant\",\"content\":" + (reasoning == null ? "\"\"" : "null"), "null",
+            null));
+
+        int tokens = 0;
+
+        if (reasoning != null) {
+            for (String delta : Generator.split(random, reasoning)) {
+                deltas.add(delta);
+                String fields = "\"content\":null,\"reasoning_content\":" + Generator.GSON.toJson(delta);
+                write(out, chunk(id, fields, "null", null));
+                tokens++;
+            }
+        }
+
+        for (String delta : Generator.split(random, answer)) {
+            deltas.add(delta);
+            String fields = "\"content\":" + Generator.GSON.toJson(delta);
+            write(out, chunk(id, reasoning == null ? fields : fields + ",\"reasoning_content\":null", "null", null));
+            tokens++;
+        }
+
+        String usage = "{\"prompt_tokens\":1200,\"completion_tokens\":" + tokens + ",\"total_tokens\":"
+            + (1200 + tokens) + ",\"prompt_cache_hit_tokens\":1024,\"prompt_cache_miss_tokens\":176}";
+        write(out, chunk(id, "\"content\":\"\"", "\"stop\"", usage));
+        write(out, "data: [DONE]\n\n");
+
+        return out.toByteArray();
+    }
+
+    private String chunk(String id, String delta, String finishReason, String usage) {
+        return "data: {\"id\":\"" + id + "\",\"object\":\"chat.completion.chunk\",\"created\":1738454400,\"model\":\""
+            + model + "\",\"system_fingerprint\":\"fp_3a5770e1b4_prod0225\",\"choices\":[{\"index\":0,\"delta\":{"
+            + delta + "},\"logprobs\":null,\"finish_reason\":" + finishReason + "}]"
+            + (usage == null ? "" : ",\"usage\":" + usage) + "}\n\n";
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 枚举常量在静态字段之前初始化，生成样本用到的常量放在单独的类中
+    private static final class Generator {
+        private static final Gson GSON = new Gson();
+
+        private static final String[] WORDS = {"the", "request", "stream", "token", "buffer", "render", "layout",
+            "cache", "value", "list", "should", "because", "first", "then", "we", "can", "use", "a", "method", "class",
+            "return", "这个", "方法", "需要", "考虑", "性能", "问题", "可以", "使用", "缓存", "然后", "返回", "结果", "因为", "所以"};
+
+        private static final String[] TYPES = {"String", "int", "long", "List<String>", "Map<String, Integer>"};
+
+        private static List<String> split(Random random, String text) {
+            List<String> parts = new ArrayList<>();
+
+            for (int i = 0; i < text.length(); ) {
+                int end = Math.min(text.length(), i + 1 + random.nextInt(5));
+                parts.add(text.substring(i, end));
+                i = end;
+            }
+
+            return parts;
+        }
+
+        private static String prose(Random random, int size) {
+            StringBuilder text = new StringBuilder(size + 256);
+
+            while (text.length() < size) {
+                int sentences = 3 + random.nextInt(4);
+
+                for (int i = 0; i < sentences; i++) {
+                    int words = 6 + random.nextInt(12);
+
+                    for (int j = 0; j < words; j++) {
+                        text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                    }
+
+                    text.setCharAt(text.length() - 1, '.');
+                    text.append(' ');
+                }
+
+                // 偶尔插入列表，和真实回答的结构接近
+                if (random.nextInt(4) == 0) {
+                    text.append("\n\n");
+
+                    for (int i = 1; i <= 3; i++) {
+                        text.append(i).append(". **").append(WORDS[random.nextInt(WORDS.length)]).append("**: `")
+                            .append(WORDS[random.nextInt(WORDS.length)]).append("()`\n");
+                    }
+                }
+
+                text.append("\n\n");
+            }
+
+            return text.toString();
+        }
+
+        private static String codeAnswer(Random random, int size) {
+            StringBuilder text = new StringBuilder(size + 1024);
+            text.append("## 实现\n\n").append(prose(random, 300)).append("```java\npublic class Generated {\n");
+
+            int method = 0;
+
+            while (text.length() < size - 400) {
+                String type = TYPES[random.nextInt(TYPES.length)];
+
+                text.append("    // ").append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+                    .append(WORDS[random.nextInt(WORDS.length)]).append('\n');
+                text.append("    public ").append(type).append(" method").append(method++).append("(")
+                    .append(type).append(" value, int count) {\n");
+                text.append("        for (int i = 0; i < count; i++) {\n");
+                text.append("            if (i % ").append(2 + random.nextInt(7)).append(" == 0) {\n");
+                text.append("                System.out.println(\"value = \" + value + \", i = \" + i);\n");
+                text.append("            }\n        }\n\n        return value;\n    }\n\n");
+            }
+
+            text.append("}\n```\n\n### 说明\n\n").append(prose(random, 300));
+
+            return text.toString();
+        }
+    }
+}
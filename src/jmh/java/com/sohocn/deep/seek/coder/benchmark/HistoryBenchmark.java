@@ -0,0 +1,93 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+import com.sohocn.deep.seek.coder.store.ConversationStore;
+
+/**
+ * ConversationStore 在临时目录下追加一条消息、读取最近一页和压缩日志的开销。
+ * 日志中预先写入 messages 条一问一答交替的消息。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HistoryBenchmark {
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"20", "200"})
+    public int messages;
+
+    private List<ChatMessage> history;
+    private Path directory;
+    private ConversationStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixture[] fixtures = Fixture.values();
+        history = new ArrayList<>(messages);
+
+        // 一问一答交替，回答轮流使用各个样本
+        for (int i = 0; i < messages; i++) {
+            history.add(i % 2 == 0 ? new ChatMessage("question " + i, true)
+                : new ChatMessage(fixtures[(i / 2) % fixtures.length].getText(), false));
+        }
+    }
+
+    // 每轮迭代从同样的日志开始，追加和压缩不会累积
+    @Setup(Level.Iteration)
+    public void openStore() throws IOException {
+        directory = Files.createTempDirectory("deepseek-history");
+        store = new ConversationStore(directory);
+
+        for (ChatMessage message : history) {
+            store.append(message);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteStore() throws IOException {
+        store.dispose();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        store.append(history.get(history.size() - 1));
+    }
+
+    @Benchmark
+    public List<ChatMessage> readTail() throws IOException {
+        return store.readTail(PAGE_SIZE);
+    }
+
+    // 追加一条后压缩回 messages 条，每次调用重写的数据量相同
+    @Benchmark
+    public void compact() throws IOException {
+        store.append(history.get(history.size() - 1));
+        store.compact(messages);
+    }
+}
@@ -0,0 +1,131 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.awt.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.*;
+import javax.swing.text.html.HTMLDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.intellij.ui.components.JBPanel;
+import com.intellij.util.ui.JBUI;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+import com.sohocn.deep.seek.coder.sidebar.MessageListPanel;
+
+/**
+ * 拖动侧边栏后 MessageListPanel 按新宽度重新布局的开销，包括 updateVisible 回收、创建和测量视口附近的气泡。
+ * 视口停在列表底部，与查看最新回答时相同。需要在 java.awt.headless=true 下运行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LayoutBenchmark {
+    private static final int HEIGHT = 800;
+    private static final int WIDTH = 400;
+    private static final int WIDTH_STEP = 32; // 大于高度缓存的宽度分档
+    private static final int WIDTH_STEPS = 8; // 多于高度缓存保留的宽度数，每次都需要重新测量
+
+    @Param({"20", "200"})
+    public int messages;
+
+    private JScrollPane scrollPane;
+    private MessageListPanel panel;
+    private int step;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixture[] fixtures = Fixture.values();
+        List<ChatMessage> history = new ArrayList<>(messages);
+
+        for (int i = 0; i < messages; i++) {
+            history.add(i % 2 == 0 ? new ChatMessage("question " + i, true)
+                : new ChatMessage(fixtures[(i / 2) % fixtures.length].getText(), false));
+        }
+
+        MetricsRegistry.getInstance().reset();
+
+        onEdt(() -> {
+            panel = new MessageListPanel(LayoutBenchmark::createBubble);
+            scrollPane = new JScrollPane(panel);
+            scrollPane.setSize(WIDTH, HEIGHT);
+            scrollPane.addNotify();
+            scrollPane.validate();
+            panel.relayout();
+            panel.setMessages(history);
+        });
+
+        // 等待整页历史构建并测量完成
+        while (!MetricsRegistry.getInstance().getStats().containsKey(MetricsRegistry.UI_HISTORY_LOAD)) {
+            Thread.sleep(10);
+        }
+
+        onEdt(() -> {});
+    }
+
+    // 在两个宽度之间切换，高度都已缓存，只有回收和创建气泡的开销
+    @Benchmark
+    public int resizeCached() throws Exception {
+        return resize(WIDTH + (step++ % 2) * WIDTH_STEP);
+    }
+
+    // 每次都换到高度缓存中没有的宽度，视口附近的气泡全部重新测量
+    @Benchmark
+    public int resizeUncached() throws Exception {
+        return resize(WIDTH + (step++ % WIDTH_STEPS) * WIDTH_STEP);
+    }
+
+    private int resize(int width) throws Exception {
+        int[] height = new int[1];
+
+        onEdt(() -> {
+            scrollPane.setSize(width, HEIGHT);
+            scrollPane.validate();
+            panel.relayout();
+        });
+
+        // 等待重新布局时排队的滚动和可见范围更新
+        onEdt(() -> height[0] = panel.getPreferredSize().height);
+
+        return height[0];
+    }
+
+    private static void onEdt(Runnable runnable) throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+
+    // 与工具窗口中的气泡结构相同，MessageListPanel 通过客户端属性找到文本区域测量高度
+    private static JBPanel<JBPanel<?>> createBubble(HTMLDocument document, boolean user) {
+        JBPanel<JBPanel<?>> bubble = new JBPanel<>(new BorderLayout());
+        bubble.setBorder(JBUI.Borders.empty(10));
+
+        JBPanel<?> messagePanel = new JBPanel<>(new BorderLayout());
+        messagePanel.setBorder(JBUI.Borders.empty(1));
+
+        JEditorPane textArea = new JEditorPane();
+        textArea.setContentType("text/html");
+        textArea.setEditable(false);
+        textArea.setBorder(JBUI.Borders.empty(8));
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        textArea.setDocument(document);
+
+        bubble.putClientProperty("textArea", textArea);
+        bubble.putClientProperty("textPanel", messagePanel);
+
+        messagePanel.add(textArea, BorderLayout.CENTER);
+        bubble.add(messagePanel, BorderLayout.CENTER);
+
+        return bubble;
+    }
+}
@@ -0,0 +1,281 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import com.sohocn.deep.seek.coder.metrics.TimingRequestExecutor;
+import com.sohocn.deep.seek.coder.service.RequestBody;
+import com.sohocn.deep.seek.coder.service.RequestBodyBuilder;
+import com.sohocn.deep.seek.coder.service.RequestBodyEntity;
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+import com.sohocn.deep.seek.coder.stream.StreamingClient;
+
+/**
+ * 无界面的端到端压测工具，用插件中的请求体构建和 {@link StreamingClient} 发送请求，
+ * 统计插件一侧的吞吐量和延迟。
+ * <p>
+ * 默认启动一个嵌入的 {@link MockSseServer}，服务端的速率和首 token 时间是已知的，
+ * 测得的数值减去这些时间就是插件自身的开销。传入 --url 时改为请求指定的接口。
+ *
+ * <pre>
+ * ./gradlew loadTest --args="--fixture=CODE_ANSWER --rate=0 --requests=50 --concurrency=4"
+ * </pre>
+ * <p>
+ * 参数：--fixture、--recorded、--rate、--burst、--delay、--error-status、--error-rate 见 {@link MockSseServer}；
+ * --requests 请求数，--concurrency 并发数，--warmup 预热请求数，--context 每个请求附带的历史消息数，
+ * --url 和 --api-key 指定真实的接口。
+ */
+public class LoadHarness {
+    private static final String MODEL = "deepseek-chat";
+    private static final String PROMPT = "You are a helpful assistant specialized in programming.";
+
+    // 一次请求的测量结果，时间单位为纳秒
+    private static final class Sample {
+        private final long start = System.nanoTime();
+        private long build;
+        private long ttfb = -1;
+        private long ttft = -1;
+        private long duration;
+        private long chunks;
+        private long chars;
+        private long bytes;
+        private long lastChunk;
+        private final List<Long> gaps = new ArrayList<>();
+        private String error;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = MockSseServer.arguments(args);
+        MockSseServer.Options options = MockSseServer.Options.from(arguments);
+
+        int requests = Integer.parseInt(arguments.getOrDefault("requests", "20"));
+        int concurrency = Math.max(1, Integer.parseInt(arguments.getOrDefault("concurrency", "1")));
+        int warmup = Integer.parseInt(arguments.getOrDefault("warmup", "5"));
+        int contextSize = Integer.parseInt(arguments.getOrDefault("context", "6"));
+        String url = arguments.get("url");
+        String apiKey = arguments.getOrDefault("api-key", "mock");
+
+        MockSseServer server = url == null ? new MockSseServer(MockSseServer.source(arguments), options, 0) : null;
+        String endpoint = url != null ? url : server.getUrl();
+
+        // 与 HttpClientService 相同的连接池和计时方式
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(concurrency);
+        connectionManager.setDefaultMaxPerRoute(concurrency);
+
+        CloseableHttpClient client = HttpClients
+            .custom()
+            .setConnectionManager(connectionManager)
+            .setRequestExecutor(new TimingRequestExecutor())
+            .disableConnectionState()
+            .build();
+
+        StreamingClient streamingClient = new StreamingClient(client);
+        RequestBodyBuilder requestBodyBuilder = new RequestBodyBuilder();
+        List<ChatMessage> context = context(contextSize);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        try {
+            System.out.println("Endpoint: " + endpoint + (server != null ? " (" + options + ")" : ""));
+
+            run(executor, warmup, () -> send(streamingClient, requestBodyBuilder, endpoint, apiKey, context));
+
+            long start = System.nanoTime();
+            List<Sample> samples =
+                run(executor, requests, () -> send(streamingClient, requestBodyBuilder, endpoint, apiKey, context));
+            long elapsed = System.nanoTime() - start;
+
+            report(samples, elapsed, server != null ? options : null);
+        } finally {
+            executor.shutdownNow();
+            client.close();
+
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static List<Sample> run(ExecutorService executor, int count, Callable<Sample> task) throws Exception {
+        List<Future<Sample>> futures = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(task));
+        }
+
+        List<Sample> samples = new ArrayList<>(count);
+
+        for (Future<Sample> future : futures) {
+            samples.add(future.get());
+        }
+
+        return samples;
+    }
+
+    private static Sample send(StreamingClient streamingClient, RequestBodyBuilder requestBodyBuilder,
+        String endpoint, String apiKey, List<ChatMessage> context) {
+        Sample sample = new Sample();
+
+        try {
+            HttpPost httpPost = new HttpPost(endpoint);
+            httpPost.setHeader("Content-Type", "application/json");
+            httpPost.setHeader("Authorization", "Bearer " + apiKey);
+            httpPost.setHeader("Accept", "text/event-stream");
+
+            RequestBody requestBody = requestBodyBuilder.build(MODEL, PROMPT, context, "How do I stream a response?");
+            httpPost.setEntity(new RequestBodyEntity(requestBody));
+            sample.build = System.nanoTime() - sample.start;
+
+            sample.bytes = streamingClient.execute(httpPost, () -> false, new StreamingClient.Listener() {
+                @Override
+                public void onResponse(HttpContext httpContext) {
+                    Object received = httpContext.getAttribute(TimingRequestExecutor.RESPONSE_RECEIVED);
+
+                    if (received instanceof Long) {
+                        sample.ttfb = (Long)received - sample.start;
+                    }
+                }
+
+                @Override
+                public void onChunk(String content) {
+                    long now = System.nanoTime();
+
+                    if (sample.chunks == 0) {
+                        sample.ttft = now - sample.start;
+                    } else {
+                        sample.gaps.add(now - sample.lastChunk);
+                    }
+
+                    sample.lastChunk = now;
+                    sample.chunks++;
+                    sample.chars += content.length();
+                }
+            });
+        } catch (Exception e) {
+            sample.error = e.getMessage();
+        }
+
+        sample.duration = System.nanoTime() - sample.start;
+
+        return sample;
+    }
+
+    // 按时间顺序排列的历史消息，回答使用各个样本
+    private static List<ChatMessage> context(int size) {
+        Fixture[] fixtures = Fixture.values();
+        List<ChatMessage> context = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            context.add(i % 2 == 0 ? new ChatMessage("question " + i, true)
+                : new ChatMessage(fixtures[(i / 2) % fixtures.length].getAnswer(), false));
+        }
+
+        return context;
+    }
+
+    private static void report(List<Sample> samples, long elapsed, MockSseServer.Options options) {
+        Map<String, Integer> errors = new TreeMap<>();
+        List<Long> build = new ArrayList<>();
+        List<Long> ttfb = new ArrayList<>();
+        List<Long> ttft = new ArrayList<>();
+        List<Long> gaps = new ArrayList<>();
+        List<Long> duration = new ArrayList<>();
+        List<Long> chunksPerSecond = new ArrayList<>();
+        long chunks = 0;
+        long chars = 0;
+        long bytes = 0;
+
+        for (Sample sample : samples) {
+            if (sample.error != null) {
+                errors.merge(sample.error, 1, Integer::sum);
+                continue;
+            }
+
+            build.add(sample.build);
+            ttfb.add(sample.ttfb);
+
+            if (sample.chunks == 0) {
+                continue;
+            }
+
+            ttft.add(sample.ttft);
+            gaps.addAll(sample.gaps);
+            duration.add(sample.duration);
+            chunks += sample.chunks;
+            chars += sample.chars;
+            bytes += sample.bytes;
+
+            long streaming = sample.lastChunk - sample.start - sample.ttft;
+
+            if (sample.chunks > 1 && streaming > 0) {
+                chunksPerSecond.add((sample.chunks - 1) * TimeUnit.SECONDS.toNanos(1) / streaming);
+            }
+        }
+
+        double seconds = elapsed / 1e9;
+
+        System.out.printf("Requests: %d ok, %d failed, %.2f s%n", build.size(), samples.size() - build.size(),
+            seconds);
+        errors.forEach((message, count) -> System.out.printf("  %4d x %s%n", count, message));
+        System.out.printf("Throughput: %.1f requests/s, %.0f chunks/s, %.0f chars/s, %.2f MB/s%n",
+            build.size() / seconds, chunks / seconds, chars / seconds, bytes / seconds / 1024 / 1024);
+        System.out.println();
+        System.out.printf("%-24s %10s %10s %10s %10s%n", "", "p50", "p90", "p99", "max");
+
+        print("build (us)", build, 1000);
+        print("ttfb (ms)", ttfb, 1_000_000);
+        print("ttft (ms)", ttft, 1_000_000);
+
+        // 服务端故意等待的时间之外的部分就是插件和本机网络栈的开销
+        if (options != null) {
+            long delay = TimeUnit.MILLISECONDS.toNanos(options.getFirstTokenDelay());
+            List<Long> overhead = new ArrayList<>(ttft.size());
+
+            for (long value : ttft) {
+                overhead.add(value - delay);
+            }
+
+            print("ttft overhead (ms)", overhead, 1_000_000);
+        }
+
+        print("chunk gap (us)", gaps, 1000);
+        print("duration (ms)", duration, 1_000_000);
+        print("chunks/s per request", chunksPerSecond, 1);
+
+        if (options != null && options.getTokensPerSecond() > 0) {
+            System.out.printf("Server rate: %.0f chunks/s%n", options.getTokensPerSecond());
+        }
+    }
+
+    private static void print(String name, List<Long> values, long unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(values);
+
+        System.out.printf("%-24s %10.1f %10.1f %10.1f %10.1f%n", name, percentile(values, 0.5) / (double)unit,
+            percentile(values, 0.9) / (double)unit, percentile(values, 0.99) / (double)unit,
+            values.get(values.size() - 1) / (double)unit);
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        int index = (int)Math.ceil(quantile * sorted.size()) - 1;
+
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
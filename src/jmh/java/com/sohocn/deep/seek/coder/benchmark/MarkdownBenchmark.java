@@ -0,0 +1,69 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sohocn.deep.seek.coder.util.IncrementalMarkdownRenderer;
+import com.sohocn.deep.seek.coder.util.MarkdownUtil;
+
+/**
+ * 流式回答过程中的 Markdown 渲染：内容不断增长，每攒够 deltasPerRender 个分片渲染一次，
+ * 对应界面按帧合并分片后刷新的情况。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MarkdownBenchmark {
+    @Param({"SHORT_CHAT", "CODE_ANSWER", "REASONING_TRACE"})
+    public Fixture fixture;
+
+    @Param({"4", "16"})
+    public int deltasPerRender;
+
+    // 每次都重新渲染全部内容
+    @Benchmark
+    public void fullRender(Blackhole blackhole) {
+        List<String> deltas = fixture.getDeltas();
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < deltas.size(); i++) {
+            text.append(deltas.get(i));
+
+            if ((i + 1) % deltasPerRender == 0 || i == deltas.size() - 1) {
+                blackhole.consume(MarkdownUtil.render(text.toString()));
+            }
+        }
+    }
+
+    // 只重新渲染最后一个未结束的块
+    @Benchmark
+    public void incrementalRender(Blackhole blackhole) {
+        List<String> deltas = fixture.getDeltas();
+        IncrementalMarkdownRenderer renderer = new IncrementalMarkdownRenderer();
+        StringBuilder batch = new StringBuilder();
+
+        for (int i = 0; i < deltas.size(); i++) {
+            batch.append(deltas.get(i));
+
+            if ((i + 1) % deltasPerRender == 0 || i == deltas.size() - 1) {
+                blackhole.consume(renderer.append(batch.toString()));
+                batch.setLength(0);
+            }
+        }
+    }
+
+    // 加载历史记录时渲染完整的消息
+    @Benchmark
+    public String renderComplete() {
+        return MarkdownUtil.render(fixture.getText());
+    }
+}
@@ -0,0 +1,227 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 本地模拟的 DeepSeek 流式接口，按设定的分片速率、突发方式和错误码回放 SSE 响应。
+ * <p>
+ * 基于 JDK 自带的 HttpServer，可以嵌入压测工具，也可以单独启动后把插件设置中的接口地址指向它，
+ * 从而把插件自身的开销和网络抖动分开测量。回放的内容可以是 {@link Fixture} 生成的样本，也可以是录制的 SSE 文件。
+ */
+public class MockSseServer implements AutoCloseable {
+    public static final String PATH = "/v1/chat/completions";
+
+    public static final class Options {
+        private double tokensPerSecond = 50; // 每秒发送的分片数，0 表示不限速
+        private int burst = 1; // 每次连续发送的分片数
+        private long firstTokenDelay = 300; // 收到请求到发送第一个分片的时间（毫秒）
+        private int errorStatus = 503;
+        private double errorRate; // 返回 errorStatus 的请求比例
+
+        // 从 --rate=50 --burst=1 --delay=300 --error-status=503 --error-rate=0.1 形式的参数读取
+        public static Options from(Map<String, String> arguments) {
+            Options options = new Options();
+            options.tokensPerSecond = Double.parseDouble(arguments.getOrDefault("rate", "50"));
+            options.burst = Math.max(1, Integer.parseInt(arguments.getOrDefault("burst", "1")));
+            options.firstTokenDelay = Long.parseLong(arguments.getOrDefault("delay", "300"));
+            options.errorStatus = Integer.parseInt(arguments.getOrDefault("error-status", "503"));
+            options.errorRate = Double.parseDouble(arguments.getOrDefault("error-rate", "0"));
+
+            return options;
+        }
+
+        public double getTokensPerSecond() {
+            return tokensPerSecond;
+        }
+
+        public long getFirstTokenDelay() {
+            return firstTokenDelay;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rate=%s/s burst=%d delay=%dms errors=%d@%.0f%%",
+                tokensPerSecond > 0 ? String.valueOf(tokensPerSecond) : "unlimited", burst, firstTokenDelay,
+                errorStatus, errorRate * 100);
+        }
+    }
+
+    private final List<byte[]> events;
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Mock SSE Server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    // port 为 0 时使用随机端口
+    public MockSseServer(byte[] sse, Options options, int port) throws IOException {
+        this.events = split(sse);
+        this.options = options;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    // 收到的请求数和请求体字节数
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        long index = requests.getAndIncrement();
+
+        try (InputStream body = exchange.getRequestBody()) {
+            requestBytes.addAndGet(body.transferTo(OutputStream.nullOutputStream()));
+        }
+
+        // 按比例均匀地让一部分请求失败，结果可以复现
+        if ((long)((index + 1) * options.errorRate) > (long)(index * options.errorRate)) {
+            byte[] error = ("{\"error\":{\"message\":\"Mock error\",\"type\":\"mock_error\",\"code\":"
+                + options.errorStatus + "}}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(options.errorStatus, error.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(error);
+            }
+
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        long start = received + TimeUnit.MILLISECONDS.toNanos(options.firstTokenDelay);
+        double interval = options.tokensPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / options.tokensPerSecond : 0;
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < events.size(); i += options.burst) {
+                // 按绝对时间排期，写出的耗时不会累积成速率偏差
+                parkUntil(start + (long)(i * interval));
+
+                for (int j = i; j < Math.min(events.size(), i + options.burst); j++) {
+                    out.write(events.get(j));
+                }
+
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 客户端取消请求时连接被关闭
+        }
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // 按空行把 SSE 响应切分为事件，每个事件包含结尾的空行，录制的文件可以使用 CRLF 换行
+    static List<byte[]> split(byte[] sse) {
+        List<byte[]> events = new ArrayList<>();
+        int start = 0;
+
+        for (int i = 0; i < sse.length; i++) {
+            if (sse[i] != '\n') {
+                continue;
+            }
+
+            int next = i + 1 < sse.length && sse[i + 1] == '\r' ? i + 2 : i + 1;
+
+            if (next < sse.length && sse[next] == '\n') {
+                events.add(Arrays.copyOfRange(sse, start, next + 1));
+                start = next + 1;
+                i = next;
+            }
+        }
+
+        if (start < sse.length) {
+            events.add(Arrays.copyOfRange(sse, start, sse.length));
+        }
+
+        return events;
+    }
+
+    // 解析 --key=value 形式的参数，单独的 --flag 视为 true
+    static Map<String, String> arguments(String[] args) {
+        Map<String, String> arguments = new HashMap<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                arguments.put(equals > 0 ? arg.substring(2, equals) : arg.substring(2),
+                    equals > 0 ? arg.substring(equals + 1) : "true");
+            }
+        }
+
+        return arguments;
+    }
+
+    // --recorded 指定录制的 SSE 文件，否则使用 --fixture 指定的样本
+    static byte[] source(Map<String, String> arguments) throws IOException {
+        String recorded = arguments.get("recorded");
+
+        if (recorded != null) {
+            return Files.readAllBytes(Path.of(recorded));
+        }
+
+        return Fixture.valueOf(arguments.getOrDefault("fixture", "SHORT_CHAT")).getSse();
+    }
+
+    // 单独启动：./gradlew mockServer --args="--port=8089 --fixture=CODE_ANSWER --rate=40"
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = arguments(args);
+        Options options = Options.from(arguments);
+        int port = Integer.parseInt(arguments.getOrDefault("port", "8089"));
+
+        MockSseServer server = new MockSseServer(source(arguments), options, port);
+        System.out.println("Mock DeepSeek API listening on " + server.getUrl() + " (" + options + ")");
+
+        Thread.currentThread().join();
+    }
+}
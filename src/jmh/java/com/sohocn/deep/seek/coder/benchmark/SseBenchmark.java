@@ -0,0 +1,101 @@
+package com.sohocn.deep.seek.coder.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+import com.sohocn.deep.seek.coder.bo.MessageBO;
+import com.sohocn.deep.seek.coder.stream.DeltaExtractor;
+import com.sohocn.deep.seek.coder.stream.SseDecoder;
+
+/**
+ * 解码一次完整的流式响应：SSE 分帧加上每个分片的 JSON 解析。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SseBenchmark {
+    @Param({"SHORT_CHAT", "CODE_ANSWER", "REASONING_TRACE"})
+    public Fixture fixture;
+
+    private final Gson gson = new Gson();
+
+    // 改造前的做法：逐行读取字符串，每个分片都完整绑定 MessageBO
+    @Benchmark
+    public void lineReaderWithGson(Blackhole blackhole) throws IOException {
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new ByteArrayInputStream(fixture.getSse()), StandardCharsets.UTF_8));
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("data: ")) {
+                String jsonData = line.substring(6);
+
+                if ("[DONE]".equals(jsonData)) {
+                    break;
+                }
+
+                blackhole.consume(gson.fromJson(jsonData, MessageBO.class));
+            }
+        }
+    }
+
+    // 只有 SSE 分帧，不解析 JSON
+    @Benchmark
+    public long decoderOnly(Blackhole blackhole) throws IOException {
+        SseDecoder decoder = new SseDecoder(event -> {
+            blackhole.consume(event.getDataLength());
+            return !event.dataEquals("[DONE]");
+        });
+        decoder.decode(new ByteArrayInputStream(fixture.getSse()));
+
+        return decoder.getBytesRead();
+    }
+
+    @Benchmark
+    public void decoderWithGson(Blackhole blackhole) throws IOException {
+        SseDecoder decoder = new SseDecoder(event -> {
+            if (event.dataEquals("[DONE]")) {
+                return false;
+            }
+
+            blackhole.consume(gson.fromJson(event.getDataReader(), MessageBO.class));
+            return true;
+        });
+        decoder.decode(new ByteArrayInputStream(fixture.getSse()));
+    }
+
+    // 与 DeepSeekService 中的热路径相同：只提取 delta，低频分片才完整绑定
+    @Benchmark
+    public void decoderWithDeltaExtractor(Blackhole blackhole) throws IOException {
+        DeltaExtractor extractor = new DeltaExtractor();
+        SseDecoder decoder = new SseDecoder(event -> {
+            if (event.dataEquals("[DONE]")) {
+                return false;
+            }
+
+            if (extractor.extract(event.getData(), 0, event.getDataLength()) && !extractor.needsFullBinding()) {
+                String content = extractor.getReasoningContent();
+                blackhole.consume(content != null ? content : extractor.getContent());
+            } else {
+                blackhole.consume(gson.fromJson(event.getDataReader(), MessageBO.class));
+            }
+
+            return true;
+        });
+        decoder.decode(new ByteArrayInputStream(fixture.getSse()));
+    }
+}
@@ -3,6 +3,7 @@ package com.sohocn.deep.seek.coder.bo;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gson.annotations.SerializedName;
 
 import lombok.Data;
 
@@ -24,6 +25,7 @@ public class MessageBO {
     private List<Choices> choices;
 
     @JsonProperty("system_fingerprint")
+    @SerializedName("system_fingerprint")
     private String systemFingerprint;
 
     @JsonProperty("usage")
@@ -32,13 +34,24 @@ public class MessageBO {
     @Data
     public static class Usage {
         @JsonProperty("prompt_tokens")
+        @SerializedName("prompt_tokens")
         private Integer promptTokens;
 
         @JsonProperty("completion_tokens")
+        @SerializedName("completion_tokens")
         private Integer completionTokens;
 
         @JsonProperty("total_tokens")
+        @SerializedName("total_tokens")
         private Integer totalTokens;
+
+        @JsonProperty("prompt_cache_hit_tokens")
+        @SerializedName("prompt_cache_hit_tokens")
+        private Integer promptCacheHitTokens;
+
+        @JsonProperty("prompt_cache_miss_tokens")
+        @SerializedName("prompt_cache_miss_tokens")
+        private Integer promptCacheMissTokens;
     }
 
     @Data
@@ -50,9 +63,11 @@ public class MessageBO {
         private Delta delta;
 
         @JsonProperty("finish_reason")
+        @SerializedName("finish_reason")
         private Object finishReason;
 
         @JsonProperty("content_filter_results")
+        @SerializedName("content_filter_results")
         private ContentFilterResults contentFilterResults;
     }
 
@@ -62,6 +77,7 @@ public class MessageBO {
         private String content;
 
         @JsonProperty("reasoning_content")
+        @SerializedName("reasoning_content")
         private String reasoningContent;
 
         @JsonProperty("role")
@@ -74,6 +90,7 @@ public class MessageBO {
         private Hate hate;
 
         @JsonProperty("self_harm")
+        @SerializedName("self_harm")
         private SelfHarm selfHarm;
 
         @JsonProperty("sexual")
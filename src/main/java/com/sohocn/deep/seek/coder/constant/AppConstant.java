@@ -5,13 +5,29 @@ public interface AppConstant {
     String CHAT_HISTORY = "com.sohocn.deepseek.chatHistory";
     String HISTORY_LIMIT = "com.sohocn.deepseek.historyLimit";
     String OPTION_VALUE = "com.sohocn.deepseek.optionValue";
+    String API_ENDPOINT = "com.sohocn.deepseek.apiEndpoint";
     String API_URL = "https://api.deepseek.com/v1/chat/completions";
     String APPLY_URL = "https://www.deepseek.com?from=DeepSeekCoder";
     String PROMPT = "com.sohocn.deepseek.prompt";
     String MODEL = "com.sohocn.deepseek.model";
     String CONTEXT = "com.sohocn.deepseek.context";
+    String HTTP_MAX_CONNECTIONS = "com.sohocn.deepseek.httpMaxConnections";
+    String HTTP_IDLE_TIMEOUT = "com.sohocn.deepseek.httpIdleTimeout";
+    String FRAME_RATE = "com.sohocn.deepseek.frameRate";
+    String HTML_CACHE_PERSIST = "com.sohocn.deepseek.htmlCachePersist";
+    String MAX_CONCURRENT_REQUESTS = "com.sohocn.deepseek.maxConcurrentRequests";
+    String CONTEXT_TOKEN_BUDGET = "com.sohocn.deepseek.contextTokenBudget";
+    String TOKEN_CALIBRATION = "com.sohocn.deepseek.tokenCalibration";
+    String RESPONSE_CACHE = "com.sohocn.deepseek.responseCache";
+    String RESPONSE_CACHE_TTL = "com.sohocn.deepseek.responseCacheTtl";
     String PLUGIN_NAME = "DeepSeek Coder";
     String DEFAULT_MODEL = "deepseek-chat";
+    int DEFAULT_HTTP_MAX_CONNECTIONS = 8;
+    int DEFAULT_HTTP_IDLE_TIMEOUT = 60;
+    int DEFAULT_FRAME_RATE = 30;
+    int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+    int DEFAULT_CONTEXT_TOKEN_BUDGET = 8000;
+    int DEFAULT_RESPONSE_CACHE_TTL = 24; // 小时
     String DEFAULT_PROMPT =
         "You are a helpful assistant specialized in programming and software development.Your task is to assist users with questions related to coding, debugging, software design, algorithms, and other programming-related topics. If a user asks a question outside of these areas, politely inform them that you are only able to assist with programming-related queries.";
     String NO_API_KEY_PROMPT = "Click the top right config button to set your API Key.";
@@ -0,0 +1,219 @@
+package com.sohocn.deep.seek.coder.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+
+/**
+ * 应用级的轻量指标登记。
+ * <p>
+ * 每个指标记录次数、平均值、最小值、最大值、最近一次的值，以及按 1-2-5 分档的直方图，用于估算 p50/p90/p99。
+ * 负值（例如估算偏小时的误差）按绝对值对称分档，分位数同样有意义。
+ * 耗时类指标以 Ms 或 Us 结尾表示单位。记录只是一次加锁的数组自增，可以在热路径上调用。
+ */
+public final class MetricsRegistry {
+    public static final String CONTEXT_BUDGET = "context.budget";
+    public static final String CONTEXT_TOKENS = "context.tokens";
+    public static final String CONTEXT_MESSAGES = "context.messages";
+    public static final String CONTEXT_TRUNCATED = "context.truncated";
+    public static final String USAGE_PROMPT_TOKENS = "usage.promptTokens";
+    public static final String USAGE_COMPLETION_TOKENS = "usage.completionTokens";
+    public static final String TOKEN_ESTIMATE_ERROR = "usage.estimateErrorPercent";
+    public static final String RESPONSE_CACHE_HIT = "responseCache.hit";
+    public static final String PROMPT_CACHE_HIT_TOKENS = "promptCache.hitTokens";
+    public static final String PROMPT_CACHE_MISS_TOKENS = "promptCache.missTokens";
+    public static final String PROMPT_CACHE_HIT_RATE = "promptCache.hitRatePercent";
+    public static final String PREWARM_DNS = "prewarm.dnsMs";
+    public static final String PREWARM_CONNECT = "prewarm.connectMs";
+    public static final String TTFT_COLD = "request.ttftColdMs";
+    public static final String TTFT_WARM = "request.ttftWarmMs";
+    public static final String REQUEST_BUILD = "request.buildMs";
+    public static final String REQUEST_DNS = "request.dnsMs";
+    public static final String REQUEST_CONNECT = "request.connectMs";
+    public static final String REQUEST_TTFB = "request.ttfbMs";
+    public static final String REQUEST_TTFT = "request.ttftMs";
+    public static final String REQUEST_TOKEN_GAP = "request.tokenGapMs";
+    public static final String REQUEST_DURATION = "request.durationMs";
+    public static final String REQUEST_CHUNKS = "request.chunks";
+    public static final String REQUEST_CHUNKS_PER_SECOND = "request.chunksPerSecond";
+    public static final String REQUEST_BYTES = "request.bytes";
+    public static final String UI_RENDER = "ui.markdownRenderUs";
+    public static final String UI_DOCUMENT_BUILD = "ui.documentBuildUs";
+    public static final String UI_DOCUMENT_SWAP = "ui.documentSwapUs";
+    public static final String UI_LAYOUT = "ui.layoutUs";
+    public static final String UI_HISTORY_LOAD = "ui.historyLoadMs";
+    public static final String STARTUP_CREATE_CONTENT = "startup.createContentUs";
+    public static final String STARTUP_BACKGROUND_INIT = "startup.backgroundInitMs";
+    public static final String STARTUP_BUILD_UI = "startup.buildUiMs";
+    public static final String STARTUP_READY = "startup.readyMs";
+
+    // 直方图桶的上界，按 1-2-5 序列从 1 到 10^9
+    private static final long[] BOUNDS = bounds();
+
+    public static final class Stat {
+        private final long[] buckets = new long[BOUNDS.length + 1];
+
+        // 负值按绝对值分档
+        private final long[] negativeBuckets = new long[BOUNDS.length + 1];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private long last;
+
+        private synchronized void record(long value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+
+            if (value < 0) {
+                negativeBuckets[bucketOf(-value)]++;
+            } else {
+                buckets[bucketOf(value)]++;
+            }
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getLast() {
+            return last;
+        }
+
+        public synchronized long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        public synchronized long getMax() {
+            return count == 0 ? 0 : max;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : (double)sum / count;
+        }
+
+        // 近似分位数，返回所在桶的上界，限制在最小值和最大值之间
+        public synchronized long getPercentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long target = Math.max(1, (long)Math.ceil(quantile * count));
+            long cumulative = 0;
+
+            // 负值从绝对值最大的桶开始，桶 i 的上界是 -(BOUNDS[i - 1] + 1)
+            for (int i = negativeBuckets.length - 1; i >= 0; i--) {
+                cumulative += negativeBuckets[i];
+
+                if (cumulative >= target) {
+                    return clamp(i > 0 ? -BOUNDS[i - 1] - 1 : -1);
+                }
+            }
+
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+
+                if (cumulative >= target) {
+                    return i < BOUNDS.length ? clamp(BOUNDS[i]) : max;
+                }
+            }
+
+            return max;
+        }
+
+        private long clamp(long value) {
+            return Math.max(min, Math.min(value, max));
+        }
+
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("mean", getMean());
+            map.put("min", getMin());
+            map.put("p50", getPercentile(0.5));
+            map.put("p90", getPercentile(0.9));
+            map.put("p99", getPercentile(0.99));
+            map.put("max", getMax());
+            map.put("last", last);
+
+            return map;
+        }
+    }
+
+    // 不在 IDE 中运行（例如基准测试）时使用的实例
+    private static final class Standalone {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    private final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getInstance() {
+        Application application = ApplicationManager.getApplication();
+
+        return application == null ? Standalone.INSTANCE : application.getService(MetricsRegistry.class);
+    }
+
+    public void record(String name, long value) {
+        stats.computeIfAbsent(name, key -> new Stat()).record(value);
+    }
+
+    // 按名称排序的全部指标
+    public Map<String, Stat> getStats() {
+        return new TreeMap<>(stats);
+    }
+
+    // 记录从 startNanos 到现在经过的毫秒数
+    public void recordSince(String name, long startNanos) {
+        record(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    // 记录从 startNanos 到现在经过的微秒数，用于 EDT 上的短操作
+    public void recordMicrosSince(String name, long startNanos) {
+        record(name, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    // 导出全部指标，按名称排序
+    public String toJson() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Stat> entry : getStats().entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().toMap());
+        }
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(snapshot);
+    }
+
+    private static int bucketOf(long value) {
+        int index = Arrays.binarySearch(BOUNDS, value);
+
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static long[] bounds() {
+        List<Long> bounds = new ArrayList<>();
+
+        for (long base = 1; base <= 1_000_000_000L; base *= 10) {
+            bounds.add(base);
+            bounds.add(base * 2);
+            bounds.add(base * 5);
+        }
+
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,73 @@
+package com.sohocn.deep.seek.coder.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * 记录一次流式请求各阶段的耗时，在发送请求前创建。非线程安全，只在执行请求的线程上使用。
+ */
+public class RequestTimer {
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private final long start = System.nanoTime();
+
+    // 发送时连接池中是否有空闲连接
+    private final boolean warm;
+
+    private long firstChunk;
+    private long lastChunk;
+    private int chunks;
+
+    public RequestTimer(boolean warm) {
+        this.warm = warm;
+    }
+
+    // 收到响应头后调用，context 中的时间由 TimingRequestExecutor 写入
+    public void responseReceived(HttpContext context) {
+        Object sendStart = context.getAttribute(TimingRequestExecutor.SEND_START);
+        Object responseReceived = context.getAttribute(TimingRequestExecutor.RESPONSE_RECEIVED);
+
+        // 从开始执行到开始发送之间是获取连接的时间，冷连接包含 DNS、TCP 和 TLS 握手，其中 DNS 单独记录在 request.dnsMs
+        if (sendStart instanceof Long) {
+            metrics.record(MetricsRegistry.REQUEST_CONNECT, millis((Long)sendStart - start));
+        }
+
+        if (responseReceived instanceof Long) {
+            metrics.record(MetricsRegistry.REQUEST_TTFB, millis((Long)responseReceived - start));
+        }
+    }
+
+    // 每收到一个内容分片调用一次
+    public void chunk() {
+        long now = System.nanoTime();
+
+        if (chunks == 0) {
+            firstChunk = now;
+
+            long ttft = millis(now - start);
+            metrics.record(MetricsRegistry.REQUEST_TTFT, ttft);
+            metrics.record(warm ? MetricsRegistry.TTFT_WARM : MetricsRegistry.TTFT_COLD, ttft);
+        } else {
+            metrics.record(MetricsRegistry.REQUEST_TOKEN_GAP, millis(now - lastChunk));
+        }
+
+        lastChunk = now;
+        chunks++;
+    }
+
+    // 响应正常结束后调用，bytes 为收到的响应体字节数
+    public void finish(long bytes) {
+        metrics.record(MetricsRegistry.REQUEST_DURATION, millis(System.nanoTime() - start));
+        metrics.record(MetricsRegistry.REQUEST_CHUNKS, chunks);
+        metrics.record(MetricsRegistry.REQUEST_BYTES, bytes);
+
+        if (chunks > 1 && lastChunk > firstChunk) {
+            metrics.record(MetricsRegistry.REQUEST_CHUNKS_PER_SECOND,
+                (chunks - 1) * TimeUnit.SECONDS.toNanos(1) / (lastChunk - firstChunk));
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
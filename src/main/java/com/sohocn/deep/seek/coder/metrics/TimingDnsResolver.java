@@ -0,0 +1,37 @@
+package com.sohocn.deep.seek.coder.metrics;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+/**
+ * 记录新建连接时解析域名的耗时，复用连接池中的连接不会解析域名。解析结果与默认的解析器相同。
+ * <p>
+ * 预热连接的线程在建立连接期间设置 prewarm 标记，这期间的解析耗时记录为 PREWARM_DNS，其余记录为 REQUEST_DNS。
+ */
+public class TimingDnsResolver implements DnsResolver {
+    private static final ThreadLocal<Boolean> PREWARM = ThreadLocal.withInitial(() -> false);
+
+    // 标记当前线程是否正在预热连接，结束后需要清除
+    public static void setPrewarm(boolean prewarm) {
+        if (prewarm) {
+            PREWARM.set(true);
+        } else {
+            PREWARM.remove();
+        }
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        long start = System.nanoTime();
+
+        try {
+            return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+        } finally {
+            String metric = PREWARM.get() ? MetricsRegistry.PREWARM_DNS : MetricsRegistry.REQUEST_DNS;
+            MetricsRegistry.getInstance().recordSince(metric, start);
+        }
+    }
+}
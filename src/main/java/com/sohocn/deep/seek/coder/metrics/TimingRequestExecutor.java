@@ -0,0 +1,35 @@
+package com.sohocn.deep.seek.coder.metrics;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * 在请求上下文中记录开始发送请求（连接已经建立）和收到响应头的时间（System.nanoTime）。
+ */
+public class TimingRequestExecutor extends HttpRequestExecutor {
+    public static final String SEND_START = "com.sohocn.deepseek.sendStart";
+    public static final String RESPONSE_RECEIVED = "com.sohocn.deepseek.responseReceived";
+
+    @Override
+    protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+        throws IOException, HttpException {
+        context.setAttribute(SEND_START, System.nanoTime());
+
+        return super.doSendRequest(request, conn, context);
+    }
+
+    @Override
+    protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+        throws HttpException, IOException {
+        HttpResponse response = super.doReceiveResponse(request, conn, context);
+        context.setAttribute(RESPONSE_RECEIVED, System.nanoTime());
+
+        return response;
+    }
+}
@@ -0,0 +1,97 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+
+/**
+ * 按 token 预算挑选上下文消息。
+ * <p>
+ * 从最新的消息开始向前填充，放不下的消息在剩余预算足够时截断为首尾两段，否则停止，
+ * 保证选中的消息在时间上是连续的。非线程安全，每次请求创建一个。
+ */
+public class ContextBuilder {
+    private static final int MIN_TRUNCATED_TOKENS = 64; // 剩余预算低于该值时不再截断
+    private static final String TRUNCATED_MARKER = "\n\n... (truncated) ...\n\n";
+
+    private final TokenEstimator estimator;
+
+    private int usedTokens;
+    private int truncated;
+
+    public ContextBuilder(TokenEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    // history 按时间顺序排列，返回的消息同样按时间顺序排列
+    public List<ChatMessage> build(List<ChatMessage> history, int budget) {
+        List<ChatMessage> selected = new ArrayList<>();
+        usedTokens = 0;
+        truncated = 0;
+
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage message = history.get(i);
+            int remaining = budget - usedTokens;
+            int tokens = estimator.estimate(message);
+
+            if (tokens > remaining) {
+                if (remaining < MIN_TRUNCATED_TOKENS) {
+                    break;
+                }
+
+                message = truncate(message, tokens, remaining);
+                tokens = estimator.estimate(message);
+                truncated++;
+
+                if (tokens > remaining) {
+                    break;
+                }
+            }
+
+            selected.add(message);
+            usedTokens += tokens;
+        }
+
+        Collections.reverse(selected);
+
+        // 不以没有问题的 AI 回复开头
+        if (!selected.isEmpty() && !selected.get(0).isUser()) {
+            usedTokens -= estimator.estimate(selected.remove(0));
+        }
+
+        return selected;
+    }
+
+    public int getUsedTokens() {
+        return usedTokens;
+    }
+
+    public int getTruncated() {
+        return truncated;
+    }
+
+    // 保留开头和结尾，去掉中间部分，使消息大致落在 target 以内
+    private ChatMessage truncate(ChatMessage message, int tokens, int target) {
+        String content = message.getContent();
+        int keep = (int)((long)content.length() * (target - MIN_TRUNCATED_TOKENS / 2) / tokens);
+        keep = Math.max(0, Math.min(content.length(), keep));
+
+        int head = keep / 2;
+        int tail = keep - head;
+
+        // 不拆开代理对
+        if (head > 0 && Character.isHighSurrogate(content.charAt(head - 1))) {
+            head--;
+        }
+
+        if (tail > 0 && Character.isLowSurrogate(content.charAt(content.length() - tail))) {
+            tail--;
+        }
+
+        String text = content.substring(0, head) + TRUNCATED_MARKER + content.substring(content.length() - tail);
+
+        return new ChatMessage(text, message.isUser());
+    }
+}
@@ -0,0 +1,218 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+import com.sohocn.deep.seek.coder.store.ConversationStore;
+
+/**
+ * 项目级的对话模型，工具窗口和 DeepSeekService 共用。
+ * <p>
+ * 最近的消息保存在按历史记录上限分配的环形缓冲区中，构建请求时直接读取，不再解析整个历史记录；
+ * 写入 {@link ConversationStore} 在单独的后台线程上按顺序异步完成。工具窗口按页读取存储中的历史记录，
+ * 读取同样在写入线程上执行，此前提交的写入都已完成，页中的下标与存储一致。
+ */
+public final class ConversationService {
+    private static final Logger logger = Logger.getInstance(ConversationService.class);
+
+    // 从存储中读取的一页历史消息
+    public static final class Page {
+        private final List<ChatMessage> messages;
+        private final int from;
+        private final int revision;
+
+        private Page(List<ChatMessage> messages, int from, int revision) {
+            this.messages = messages;
+            this.from = from;
+            this.revision = revision;
+        }
+
+        // 按时间顺序排列
+        public List<ChatMessage> getMessages() {
+            return messages;
+        }
+
+        // 第一条消息在存储中的下标，为 0 时已经没有更早的消息
+        public int getFrom() {
+            return from;
+        }
+
+        // 读取时已经写入存储的修订号
+        public int getRevision() {
+            return revision;
+        }
+    }
+
+    private final ConversationStore store;
+    private final ExecutorService persistExecutor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("DeepSeek Conversation Writer", 1);
+
+    // 为空时还没有从存储中读取
+    private ArrayDeque<ChatMessage> messages;
+    private int capacity;
+
+    // 每次追加或清空时递增，工具窗口据此判断显示的内容是否需要重新加载
+    private int revision;
+
+    // 已经写入存储的修订号，只在写入线程上更新
+    private volatile int storedRevision;
+
+    public ConversationService(Project project) {
+        this.store = ConversationStore.getInstance(project);
+    }
+
+    public static ConversationService getInstance(Project project) {
+        return project.getService(ConversationService.class);
+    }
+
+    // 在后台线程提前打开存储并读取最近的消息，之后构建请求时不再访问磁盘
+    public void preload() {
+        ensureLoaded();
+    }
+
+    public synchronized int getRevision() {
+        return revision;
+    }
+
+    // 返回最近的 count 条消息，按时间顺序排列
+    public List<ChatMessage> getRecent(int count) {
+        ensureLoaded();
+
+        synchronized (this) {
+            int skip = Math.max(0, messages.size() - Math.max(0, count));
+            List<ChatMessage> recent = new ArrayList<>(messages.size() - skip);
+
+            for (ChatMessage message : messages) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    recent.add(message);
+                }
+            }
+
+            return recent;
+        }
+    }
+
+    // 返回追加后的修订号
+    public int addTurn(String message, String response) {
+        ChatMessage question = new ChatMessage(message, true);
+        ChatMessage answer = new ChatMessage(response, false);
+        int current;
+
+        synchronized (this) {
+            // 还没有读取时不需要更新缓冲区，读取时会包含这两条消息
+            if (messages != null) {
+                messages.addLast(question);
+                messages.addLast(answer);
+                trim();
+            }
+
+            current = ++revision;
+        }
+
+        persistExecutor.execute(() -> {
+            try {
+                store.append(question);
+                store.append(answer);
+            } catch (IOException e) {
+                logger.warn("Error saving chat history: " + e.getMessage());
+            } finally {
+                storedRevision = current;
+            }
+        });
+
+        return current;
+    }
+
+    public void clear() {
+        int current;
+
+        synchronized (this) {
+            if (messages != null) {
+                messages.clear();
+            }
+
+            current = ++revision;
+        }
+
+        persistExecutor.execute(() -> {
+            try {
+                store.clear();
+            } catch (IOException e) {
+                logger.warn("Error clearing chat history: " + e.getMessage());
+            } finally {
+                storedRevision = current;
+            }
+        });
+    }
+
+    // 在后台读取存储中最近的 count 条消息
+    public CompletableFuture<Page> readTail(int count) {
+        return readPage(-1, count);
+    }
+
+    // 在后台读取存储中下标 to 之前的 count 条消息
+    public CompletableFuture<Page> readBefore(int to, int count) {
+        return readPage(to, count);
+    }
+
+    // 在写入线程上读取，修订号与读到的内容对应
+    private CompletableFuture<Page> readPage(int to, int count) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                int end = to < 0 ? store.size() : to;
+                int from = Math.max(0, end - count);
+
+                return new Page(store.read(from, end), from, storedRevision);
+            } catch (IOException e) {
+                logger.warn("Error loading chat history: " + e.getMessage());
+                return new Page(Collections.emptyList(), 0, storedRevision);
+            }
+        }, persistExecutor);
+    }
+
+    // 缓冲区的容量每次读取时按历史记录上限重新计算：上限变小时丢弃最早的消息，变大或首次使用时从存储中读取。
+    // 读取在锁外进行，结果在锁内发布；读取期间有新的追加或清空时重新读取
+    private void ensureLoaded() {
+        while (true) {
+            int historyLimit = PropertiesComponent.getInstance().getInt(AppConstant.HISTORY_LIMIT, 10);
+            int wanted = Math.max(1, historyLimit) * 2; // *2 因为每次对话包含用户消息和AI回复
+
+            synchronized (this) {
+                if (messages != null && wanted <= capacity) {
+                    capacity = wanted;
+                    trim();
+                    return;
+                }
+            }
+
+            Page page = readTail(wanted).join();
+
+            synchronized (this) {
+                if (page.getRevision() == revision) {
+                    messages = new ArrayDeque<>(page.getMessages());
+                    capacity = wanted;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void trim() {
+        while (messages.size() > capacity) {
+            messages.pollFirst();
+        }
+    }
+}
@@ -1,35 +1,49 @@
 package com.sohocn.deep.seek.coder.service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.protocol.HttpContext;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
 import com.sohocn.deep.seek.coder.bo.MessageBO;
 import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+import com.sohocn.deep.seek.coder.metrics.RequestTimer;
 import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+import com.sohocn.deep.seek.coder.stream.StreamingClient;
 
 public class DeepSeekService {
     private static final Logger logger = Logger.getInstance(DeepSeekService.class);
 
-    private final Gson gson = new Gson();
+    private final RequestBodyBuilder requestBodyBuilder = new RequestBodyBuilder();
+    private final Project project;
+
+    public DeepSeekService(Project project) {
+        this.project = project;
+    }
+
+    // 设置中填写的接口地址，未填写时使用官方地址
+    public static String getApiUrl() {
+        String endpoint = PropertiesComponent.getInstance().getValue(AppConstant.API_ENDPOINT);
+
+        return endpoint == null || endpoint.isBlank() ? AppConstant.API_URL : endpoint.trim();
+    }
 
     // 修改方法签名，添加 token 使用回调
     public void streamMessage(String message, Consumer<String> onChunk, Runnable onComplete) throws IOException {
+        streamMessage(message, new RequestHandle(), onChunk, onComplete);
+    }
+
+    // 通过 handle 取消时中断连接，已经收到的内容保留，随后正常调用 onComplete
+    public void streamMessage(String message, RequestHandle handle, Consumer<String> onChunk, Runnable onComplete)
+        throws IOException {
         PropertiesComponent instance = PropertiesComponent.getInstance();
 
         String apiKey = instance.getValue(AppConstant.API_KEY);
@@ -40,120 +54,174 @@ public class DeepSeekService {
             throw new IllegalStateException("API Key not configured");
         }
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpPost httpPost = new HttpPost(AppConstant.API_URL);
+        // 使用共享连接池，连接在响应读取完毕后归还以便复用
+        CloseableHttpClient client = HttpClientService.getInstance().getClient();
+        long buildStart = System.nanoTime();
+
+        try {
+            HttpPost httpPost = new HttpPost(getApiUrl());
 
             // 设置请求头
             httpPost.setHeader("Content-Type", "application/json");
             httpPost.setHeader("Authorization", "Bearer " + apiKey);
             httpPost.setHeader("Accept", "text/event-stream");
 
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("temperature", 0.0);
-            requestBody.put("stream", true);
+            TokenEstimator estimator = TokenEstimator.getInstance();
+            boolean hasPrompt = prompt != null && !prompt.trim().isEmpty();
+            List<ChatMessage> context = List.of();
 
-            List<Map<String, String>> messages = new ArrayList<>();
+            // 获取历史记录，Context 选项限制最多几轮，再按 token 预算从最新的消息开始挑选
+            String optionValue = instance.getValue(AppConstant.CONTEXT);
+            int limitNumber = Objects.nonNull(optionValue) ? Integer.parseInt(optionValue) : 0;
+            int contextTokens = 0;
 
-            if (prompt != null && !prompt.trim().isEmpty()) {
-                messages.add(Map.of("role", "system", "content", prompt));
-            }
+            if (limitNumber > 0) {
+                int tokenBudget =
+                    instance.getInt(AppConstant.CONTEXT_TOKEN_BUDGET, AppConstant.DEFAULT_CONTEXT_TOKEN_BUDGET);
+                int budget = Math.max(0, tokenBudget - estimator.estimate(prompt) - estimator.estimate(message));
 
-            // 获取历史记录
-            String chatHistoryJson = instance.getValue(AppConstant.CHAT_HISTORY);
-            String optionValue = instance.getValue(AppConstant.OPTION_VALUE);
+                ContextBuilder contextBuilder = new ContextBuilder(estimator);
+                context =
+                    contextBuilder.build(ConversationService.getInstance(project).getRecent(limitNumber * 2), budget);
 
-            if (chatHistoryJson != null && !chatHistoryJson.isEmpty()) {
-                Type listType = new TypeToken<List<ChatMessage>>() {}.getType();
-                List<ChatMessage> chatMessages = gson.fromJson(chatHistoryJson, listType);
+                MetricsRegistry metrics = MetricsRegistry.getInstance();
+                metrics.record(MetricsRegistry.CONTEXT_BUDGET, budget);
+                metrics.record(MetricsRegistry.CONTEXT_TOKENS, contextBuilder.getUsedTokens());
+                metrics.record(MetricsRegistry.CONTEXT_MESSAGES, context.size());
+                metrics.record(MetricsRegistry.CONTEXT_TRUNCATED, contextBuilder.getTruncated());
 
-                int limitNumber = Objects.nonNull(optionValue) ? Integer.parseInt(optionValue) : 0;
+                contextTokens = contextBuilder.getUsedTokens();
+            }
 
-                // 获取最近的一条交互记录
-                if (!chatMessages.isEmpty()) {
-                    int size = chatMessages.size();
-                    int limit = size - limitNumber * 2;
+            // 整个 prompt 的估算值，收到服务端返回的 usage 后用于校准
+            int estimatedTokens = contextTokens + estimator.estimate(message) + TokenEstimator.MESSAGE_OVERHEAD
+                + (hasPrompt ? estimator.estimate(prompt) + TokenEstimator.MESSAGE_OVERHEAD : 0);
 
-                    List<ChatMessage> lastTwoMessages = limit > 0 ? chatMessages.subList(limit, size) : chatMessages;
+            // 构建请求体，字段顺序固定，前缀和历史消息复用已经编码的字节，发送时直接写入连接
+            RequestBody requestBody = requestBodyBuilder.build(model, hasPrompt ? prompt : null, context, message);
+            httpPost.setEntity(new RequestBodyEntity(requestBody));
+            MetricsRegistry.getInstance().recordSince(MetricsRegistry.REQUEST_BUILD, buildStart);
 
-                    for (ChatMessage lastTwoMessage : lastTwoMessages) {
-                        messages.add(Map.of("role", lastTwoMessage.getRole(), "content", lastTwoMessage.getContent()));
-                    }
+            // 开启回答缓存时，完全相同的请求直接回放缓存的回答
+            boolean cacheEnabled = ResponseCacheService.isEnabled();
+
+            if (cacheEnabled) {
+                String cached = ResponseCacheService.getInstance().get(requestBody);
+                MetricsRegistry.getInstance().record(MetricsRegistry.RESPONSE_CACHE_HIT, cached != null ? 1 : 0);
+
+                if (cached != null) {
+                    onChunk.accept(cached);
+                    onComplete.run();
+                    return;
                 }
             }
 
-            messages.add(Map.of("role", "user", "content", message));
-            requestBody.put("messages", messages);
+            // 排队期间已经取消的请求不再发送
+            if (!handle.attach(httpPost)) {
+                onComplete.run();
+                return;
+            }
 
-            // 转换为JSON
-            String jsonBody = gson.toJson(requestBody);
-            httpPost.setEntity(new StringEntity(jsonBody, StandardCharsets.UTF_8));
+            // 按发送时连接池中是否有空闲连接区分冷、热请求
+            RequestTimer timer = new RequestTimer(HttpClientService.getInstance().hasIdleConnection(httpPost.getURI()));
+            StringBuilder collected = new StringBuilder();
+            AtomicBoolean done = new AtomicBoolean();
 
             // 发送请求并处理流式响应
-            try (CloseableHttpResponse response = client.execute(httpPost)) {
-                int statusCode = response.getStatusLine().getStatusCode();
-                if (statusCode != 200) {
-                    // 处理非 200 响应
-                    throw new IOException("API request failed with status code: " + statusCode);
-                }
-
-                HttpEntity entity = response.getEntity();
+            try {
+                long bytes = new StreamingClient(client).execute(httpPost, handle::isCancelled,
+                    new StreamingClient.Listener() {
+                        @Override
+                        public void onResponse(HttpContext context) {
+                            timer.responseReceived(context);
+                        }
 
-                if (entity == null) {
-                    throw new IOException("Empty response from API");
-                }
+                        @Override
+                        public void onChunk(String content) {
+                            timer.chunk();
 
-                try (BufferedReader reader =
-                    new BufferedReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
-                    String line;
+                            if (cacheEnabled) {
+                                collected.append(content);
+                            }
 
-                    while ((line = reader.readLine()) != null) {
-                        if (line.isEmpty()) {
-                            continue;
+                            onChunk.accept(content);
                         }
 
-                        if (line.startsWith("data: ")) {
-                            String jsonData = line.substring(6);
+                        @Override
+                        public void onUsage(MessageBO.Usage usage) {
+                            recordUsage(usage, estimatedTokens);
+                        }
 
-                            if ("[DONE]".equals(jsonData)) {
-                                break;
-                            }
+                        @Override
+                        public void onDone() {
+                            done.set(true);
+                        }
 
-                            try {
-                                MessageBO messageBO = gson.fromJson(jsonData, MessageBO.class);
-                                MessageBO.Choices choices = Optional
-                                    .ofNullable(messageBO.getChoices())
-                                    .map(choicesList -> choicesList.get(0))
-                                    .orElse(null);
-
-                                MessageBO.Delta delta =
-                                    Optional.ofNullable(choices).map(MessageBO.Choices::getDelta).orElse(null);
-
-                                if (Objects.nonNull(delta)) {
-                                    String content =
-                                        Optional.ofNullable(delta.getReasoningContent()).orElseGet(delta::getContent);
-
-                                    if (Objects.nonNull(content)) {
-                                        onChunk.accept(content);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                logger.error(e.getMessage());
-                            }
+                        @Override
+                        public void onChunkError(Exception e) {
+                            logger.error(e.getMessage());
                         }
+                    });
+
+                if (!handle.isCancelled()) {
+                    timer.finish(bytes);
+
+                    // 只缓存以 [DONE] 正常结束的完整回答
+                    if (cacheEnabled && done.get()) {
+                        ResponseCacheService.getInstance().put(requestBody, collected.toString());
                     }
                 }
             } catch (Exception e) {
-                logger.error("Error during API request: " + e.getMessage());
+                if (!handle.isCancelled()) {
+                    logger.error("Error during API request: " + e.getMessage());
+                }
+
                 throw e;
             }
         } catch (Exception e) {
-            logger.error("Error creating HTTP client: " + e.getMessage());
+            // 取消导致的连接中断不是错误
+            if (!handle.isCancelled()) {
+                logger.error("Error sending message: " + e.getMessage());
 
-            throw e;
+                throw e;
+            }
         }
 
         onComplete.run();
     }
-}
\ No newline at end of file
+
+    // 最后一个分片带有实际的 token 用量
+    private void recordUsage(MessageBO.Usage usage, int estimatedTokens) {
+        if (usage.getPromptTokens() == null) {
+            return;
+        }
+
+        int promptTokens = usage.getPromptTokens();
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.record(MetricsRegistry.USAGE_PROMPT_TOKENS, promptTokens);
+        metrics.record(MetricsRegistry.USAGE_COMPLETION_TOKENS,
+            Optional.ofNullable(usage.getCompletionTokens()).orElse(0));
+
+        // 估算误差（百分比），正数表示估算偏大
+        if (promptTokens > 0) {
+            long error = (estimatedTokens - promptTokens) * 100L / promptTokens;
+            metrics.record(MetricsRegistry.TOKEN_ESTIMATE_ERROR, error);
+        }
+
+        // 服务端前缀缓存的命中情况
+        Integer hitTokens = usage.getPromptCacheHitTokens();
+        Integer missTokens = usage.getPromptCacheMissTokens();
+
+        if (hitTokens != null && missTokens != null) {
+            metrics.record(MetricsRegistry.PROMPT_CACHE_HIT_TOKENS, hitTokens);
+            metrics.record(MetricsRegistry.PROMPT_CACHE_MISS_TOKENS, missTokens);
+
+            if (hitTokens + missTokens > 0) {
+                metrics.record(MetricsRegistry.PROMPT_CACHE_HIT_RATE, hitTokens * 100L / (hitTokens + missTokens));
+            }
+        }
+
+        TokenEstimator.getInstance().calibrate(estimatedTokens, promptTokens);
+    }
+}
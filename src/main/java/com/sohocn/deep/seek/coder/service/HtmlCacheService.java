@@ -0,0 +1,132 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.ui.JBColor;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.util.CodeHighlighter;
+import com.sohocn.deep.seek.coder.util.HashUtil;
+import com.sohocn.deep.seek.coder.util.LruCache;
+import com.sohocn.deep.seek.coder.util.MarkdownUtil;
+
+/**
+ * 已渲染 HTML 的 LRU 缓存，按内容哈希、主题和渲染器版本区分，按总字符数限制大小。
+ * <p>
+ * 开启持久化时，缓存在 IDE 退出时写入插件的 system 目录，下次启动后台加载。
+ */
+public final class HtmlCacheService implements Disposable {
+    private static final Logger logger = Logger.getInstance(HtmlCacheService.class);
+
+    private static final int FILE_VERSION = 1;
+    private static final long MAX_CHARS = 8L * 1024 * 1024;
+
+    // 不在 IDE 中运行（例如基准测试）时使用的实例，不持久化
+    private static final class Standalone {
+        private static final HtmlCacheService INSTANCE = new HtmlCacheService(false);
+    }
+
+    private static final LruCache.Codec<String> CODEC = new LruCache.Codec<>() {
+        @Override
+        public void write(DataOutputStream out, String html) throws IOException {
+            LruCache.writeString(out, html);
+        }
+
+        @Override
+        public String read(DataInputStream in) throws IOException {
+            return LruCache.readString(in);
+        }
+    };
+
+    private final LruCache<String> cache = new LruCache<>(MAX_CHARS, String::length);
+    private final boolean persistent;
+
+    public HtmlCacheService() {
+        this(PropertiesComponent.getInstance().getBoolean(AppConstant.HTML_CACHE_PERSIST, true));
+    }
+
+    private HtmlCacheService(boolean persistent) {
+        this.persistent = persistent;
+
+        if (persistent) {
+            ApplicationManager.getApplication().executeOnPooledThread(this::load);
+        }
+    }
+
+    public static HtmlCacheService getInstance() {
+        Application application = ApplicationManager.getApplication();
+
+        return application == null ? Standalone.INSTANCE : application.getService(HtmlCacheService.class);
+    }
+
+    // 返回缓存的 HTML，未命中时渲染并放入缓存
+    public String render(String markdownText) {
+        if (markdownText.isEmpty()) {
+            return "";
+        }
+
+        String key = key(markdownText);
+        String html = cache.get(key);
+
+        if (html == null) {
+            html = MarkdownUtil.render(markdownText);
+            cache.put(key, html);
+        }
+
+        return html;
+    }
+
+    // 流式渲染完成后直接放入最终结果，下次加载历史时无需再渲染
+    public void put(String markdownText, String html) {
+        if (!markdownText.isEmpty()) {
+            cache.put(key(markdownText), html);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static String key(String markdownText) {
+        String theme = JBColor.isBright() ? "light" : "dark";
+
+        // 代码块的颜色来自编辑器配色方案
+        return MarkdownUtil.RENDERER_VERSION + ":" + theme + ":" + CodeHighlighter.getSchemeName() + ":"
+            + HashUtil.sha256(markdownText);
+    }
+
+    private static Path cacheFile() {
+        return Path.of(PathManager.getSystemPath(), "deepseek-coder", "html-cache.bin");
+    }
+
+    private void load() {
+        try {
+            cache.load(cacheFile(), FILE_VERSION, CODEC);
+        } catch (IOException e) {
+            logger.warn("Error loading HTML cache: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try {
+            cache.save(cacheFile(), FILE_VERSION, CODEC);
+        } catch (IOException e) {
+            logger.warn("Error saving HTML cache: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (persistent) {
+            save();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+import com.sohocn.deep.seek.coder.metrics.TimingDnsResolver;
+import com.sohocn.deep.seek.coder.metrics.TimingRequestExecutor;
+
+/**
+ * 应用级 HTTP 客户端，所有项目的工具窗口共享同一个连接池，避免每次请求都重新握手。
+ */
+public final class HttpClientService implements Disposable {
+    private static final Logger logger = Logger.getInstance(HttpClientService.class);
+
+    private static final long PREWARM_INTERVAL = 5000; // 两次预热之间的最小间隔（毫秒）
+    private static final int PREWARM_TIMEOUT = 10000;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final long idleMillis;
+
+    private final AtomicBoolean prewarming = new AtomicBoolean();
+    private volatile long lastPrewarm;
+
+    public HttpClientService() {
+        PropertiesComponent instance = PropertiesComponent.getInstance();
+
+        int maxConnections =
+            Math.max(1, instance.getInt(AppConstant.HTTP_MAX_CONNECTIONS, AppConstant.DEFAULT_HTTP_MAX_CONNECTIONS));
+        long idleTimeout =
+            Math.max(1, instance.getInt(AppConstant.HTTP_IDLE_TIMEOUT, AppConstant.DEFAULT_HTTP_IDLE_TIMEOUT));
+
+        // 与默认连接池相同的协议注册，只替换域名解析器以记录 DNS 耗时
+        connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder
+            .<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", SSLConnectionSocketFactory.getSocketFactory())
+            .build(), new TimingDnsResolver());
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        // 空闲超过 2 秒的连接在复用前先校验，避免拿到服务端已经关闭的连接
+        connectionManager.setValidateAfterInactivity(2000);
+
+        // 服务端没有返回 Keep-Alive 时使用空闲超时，返回了则取两者较小值
+        idleMillis = TimeUnit.SECONDS.toMillis(idleTimeout);
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, idleMillis) : idleMillis;
+        };
+
+        client = HttpClients
+            .custom()
+            .setConnectionManager(connectionManager)
+            .setKeepAliveStrategy(keepAliveStrategy)
+            .setRequestExecutor(new TimingRequestExecutor())
+            .evictExpiredConnections()
+            .evictIdleConnections(idleTimeout, TimeUnit.SECONDS)
+            .disableConnectionState()
+            .build();
+    }
+
+    public static HttpClientService getInstance() {
+        return ApplicationManager.getApplication().getService(HttpClientService.class);
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    // 连接池中是否有发往 uri 的、可以直接复用的连接
+    public boolean hasIdleConnection(URI uri) {
+        return hasIdleConnection(route(uri));
+    }
+
+    private boolean hasIdleConnection(HttpRoute route) {
+        return connectionManager.getStats(route).getAvailable() > 0;
+    }
+
+    // 在后台解析域名并完成 TCP 和 TLS 握手，把连接放回连接池，随后的请求可以直接复用
+    public void prewarm(String url) {
+        HttpRoute route;
+
+        try {
+            route = route(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            // 地址无效时不预热，发送请求时再提示
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (now - lastPrewarm < PREWARM_INTERVAL || hasIdleConnection(route)
+            || !prewarming.compareAndSet(false, true)) {
+            return;
+        }
+
+        lastPrewarm = now;
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                connect(route);
+            } catch (Exception e) {
+                logger.info("Error pre-warming connection: " + e.getMessage());
+            } finally {
+                prewarming.set(false);
+            }
+        });
+    }
+
+    // 与请求时的路由一致，预热的连接才会被复用，连接池也按这个路由统计空闲连接
+    private static HttpRoute route(URI uri) {
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : secure ? 443 : 80;
+
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
+    private void connect(HttpRoute route) throws Exception {
+        ConnectionRequest request = connectionManager.requestConnection(route, null);
+        HttpClientConnection connection = request.get(PREWARM_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        try {
+            if (!connection.isOpen()) {
+                long start = System.nanoTime();
+
+                // 连接池的解析器把这次解析记录为预热的 DNS 耗时
+                TimingDnsResolver.setPrewarm(true);
+
+                try {
+                    HttpClientContext context = HttpClientContext.create();
+                    connectionManager.connect(connection, route, PREWARM_TIMEOUT, context);
+                    connectionManager.routeComplete(connection, route, context);
+                } finally {
+                    TimingDnsResolver.setPrewarm(false);
+                }
+
+                MetricsRegistry.getInstance().recordSince(MetricsRegistry.PREWARM_CONNECT, start);
+            }
+        } finally {
+            // 按空闲超时保持连接
+            connectionManager.releaseConnection(connection, null, idleMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn("Error closing HTTP client: " + e.getMessage());
+        }
+    }
+}
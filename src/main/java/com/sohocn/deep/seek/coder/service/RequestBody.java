@@ -0,0 +1,95 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+import com.sohocn.deep.seek.coder.util.HashUtil;
+
+/**
+ * 请求体，由已经编码为 UTF-8 的字节片段和最后一条新消息组成。
+ * <p>
+ * 字节片段在多次请求之间共用；新消息在写出时才通过 JsonWriter 直接编码到输出流，
+ * 整个请求体不会生成中间的 JSON 字符串或完整的字节数组。
+ */
+public final class RequestBody {
+    private static final byte[] FOOTER = "]}".getBytes(StandardCharsets.UTF_8);
+
+    private final List<byte[]> segments;
+    private final String role;
+    private final String content;
+
+    private long length = -1;
+    private String sha256;
+
+    RequestBody(List<byte[]> segments, String role, String content) {
+        this.segments = Collections.unmodifiableList(segments);
+        this.role = role;
+        this.content = content;
+    }
+
+    // 请求体的字节数，首次调用时在不保存数据的输出流上计数
+    public synchronized long getLength() {
+        if (length < 0) {
+            CountingOutputStream counter = new CountingOutputStream();
+            writeToUnchecked(counter);
+            length = counter.count;
+        }
+
+        return length;
+    }
+
+    // 请求体的 SHA-256，字节完全相同的请求得到相同的值
+    public synchronized String sha256() {
+        if (sha256 == null) {
+            MessageDigest digest = HashUtil.newSha256();
+            writeToUnchecked(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+            sha256 = HashUtil.hex(digest.digest());
+        }
+
+        return sha256;
+    }
+
+    // 写出请求体，不关闭 out
+    public void writeTo(OutputStream out) throws IOException {
+        for (byte[] segment : segments) {
+            out.write(segment);
+        }
+
+        // 关闭 JsonWriter 会关闭底层的流，这里只刷新
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        RequestBodyBuilder.writeMessage(writer, role, content);
+        writer.flush();
+
+        out.write(FOOTER);
+    }
+
+    private void writeToUnchecked(OutputStream out) {
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            // 只用于内存中的输出流，不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
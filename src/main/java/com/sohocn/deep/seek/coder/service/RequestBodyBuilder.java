@@ -0,0 +1,107 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+import com.google.gson.stream.JsonWriter;
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+
+/**
+ * 生成字节稳定的请求体。
+ * <p>
+ * 字段顺序固定为 model、stream、temperature、messages，相同的输入总是得到完全相同的字节，
+ * 服务端的前缀缓存（system 提示词和之前的对话）因此可以命中。请求头和 system 提示词组成的前缀、
+ * 以及每条历史消息都只序列化一次，之后的请求直接复用已经编码好的字节片段。
+ */
+public class RequestBodyBuilder {
+    private static final byte[] SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+
+    // 历史消息 -> 编码后的 JSON 对象，消息从对话模型中移除后随之回收
+    private final Map<ChatMessage, byte[]> messageCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private String prefixModel;
+    private String prefixPrompt;
+    private byte[] prefix;
+
+    // prompt 为空时不发送 system 消息，context 按时间顺序排列
+    public RequestBody build(String model, String prompt, List<ChatMessage> context, String message) {
+        List<byte[]> segments = new ArrayList<>(context.size() * 2 + 2);
+        boolean first = prompt == null;
+
+        segments.add(prefix(model, prompt));
+
+        for (ChatMessage contextMessage : context) {
+            if (!first) {
+                segments.add(SEPARATOR);
+            }
+
+            segments.add(messageCache.computeIfAbsent(contextMessage,
+                key -> encodeMessage(key.getRole(), key.getContent())));
+            first = false;
+        }
+
+        if (!first) {
+            segments.add(SEPARATOR);
+        }
+
+        // 新消息在发送时直接写入连接
+        return new RequestBody(segments, "user", message);
+    }
+
+    // 模型和 system 提示词不变时复用上一次编码的前缀
+    private synchronized byte[] prefix(String model, String prompt) {
+        if (prefix == null || !Objects.equals(model, prefixModel) || !Objects.equals(prompt, prefixPrompt)) {
+            StringWriter out = new StringWriter();
+
+            try {
+                JsonWriter writer = new JsonWriter(out);
+                writer.beginObject();
+                writer.name("model").value(model);
+                writer.name("stream").value(true);
+                writer.name("temperature").value(0.0);
+                writer.name("messages").beginArray();
+
+                if (prompt != null) {
+                    writeMessage(writer, "system", prompt);
+                }
+
+                // 数组还没有结束，只刷新不关闭
+                writer.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            prefixModel = model;
+            prefixPrompt = prompt;
+            prefix = out.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        return prefix;
+    }
+
+    private static byte[] encodeMessage(String role, String content) {
+        StringWriter out = new StringWriter();
+
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writeMessage(writer, role, content);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void writeMessage(JsonWriter writer, String role, String content) throws IOException {
+        writer.beginObject();
+        writer.name("role").value(role);
+        writer.name("content").value(content);
+        writer.endObject();
+    }
+}
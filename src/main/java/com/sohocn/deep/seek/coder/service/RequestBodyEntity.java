@@ -0,0 +1,52 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * 直接把 {@link RequestBody} 写入连接输出流的请求实体，可以重复发送。
+ */
+public class RequestBodyEntity extends AbstractHttpEntity {
+    private final RequestBody body;
+
+    public RequestBodyEntity(RequestBody body) {
+        this.body = body;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return body.getLength();
+    }
+
+    // 只有在需要读取请求体时才会调用，正常发送走 writeTo
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int)body.getLength());
+        body.writeTo(out);
+
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        body.writeTo(outStream);
+        outStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.sohocn.deep.seek.coder.service;
+
+import org.apache.http.client.methods.HttpPost;
+
+/**
+ * 一次进行中的请求，取消时中断底层的 HttpPost 并释放连接。
+ */
+public final class RequestHandle {
+    private volatile HttpPost request;
+    private volatile boolean cancelled;
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        cancelled = true;
+
+        HttpPost current = request;
+
+        if (current != null) {
+            current.abort();
+        }
+    }
+
+    // 关联即将发送的请求，返回 false 表示已经取消，不应再发送
+    boolean attach(HttpPost httpPost) {
+        request = httpPost;
+
+        // 取消和关联可能同时发生，关联后再检查一次
+        if (cancelled) {
+            httpPost.abort();
+            return false;
+        }
+
+        return true;
+    }
+}
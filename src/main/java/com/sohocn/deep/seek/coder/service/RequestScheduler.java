@@ -0,0 +1,71 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+
+/**
+ * 项目级的请求调度，持有所有进行中的请求。
+ * <p>
+ * 请求在有界线程池中执行，超过最大并发数的请求排队等待，不会占满 IDE 的公共线程池；
+ * 取消请求会中断底层连接，阻塞在读取上的线程随即返回。项目关闭时取消全部请求。
+ */
+public final class RequestScheduler implements Disposable {
+    private static final Logger logger = Logger.getInstance(RequestScheduler.class);
+
+    private final Set<RequestHandle> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+
+    public RequestScheduler(Project project) {
+        int maxConcurrency = Math.max(1, PropertiesComponent
+            .getInstance()
+            .getInt(AppConstant.MAX_CONCURRENT_REQUESTS, AppConstant.DEFAULT_MAX_CONCURRENT_REQUESTS));
+
+        executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("DeepSeek Requests", maxConcurrency);
+    }
+
+    public static RequestScheduler getInstance(Project project) {
+        return project.getService(RequestScheduler.class);
+    }
+
+    // 提交一个请求任务，排队期间取消的任务仍会执行，由任务根据 handle 状态尽快结束
+    public RequestHandle submit(Consumer<RequestHandle> task) {
+        RequestHandle handle = new RequestHandle();
+        inFlight.add(handle);
+
+        executor.execute(() -> {
+            try {
+                task.accept(handle);
+            } catch (Exception e) {
+                logger.warn("Request task failed: " + e.getMessage());
+            } finally {
+                inFlight.remove(handle);
+            }
+        });
+
+        return handle;
+    }
+
+    public boolean hasActiveRequests() {
+        return !inFlight.isEmpty();
+    }
+
+    public void cancelAll() {
+        for (RequestHandle handle : inFlight) {
+            handle.cancel();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        cancelAll();
+    }
+}
@@ -0,0 +1,163 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.util.LruCache;
+
+/**
+ * 相同请求的回答缓存，默认关闭。
+ * <p>
+ * 请求固定使用 temperature 0.0，模型、提示词、上下文和问题都相同时回答基本一致，
+ * 因此按完整请求体的哈希缓存回答。条目超过有效期或总字符数超出上限时淘汰，IDE 退出时写入 system 目录。
+ */
+public final class ResponseCacheService implements Disposable {
+    private static final Logger logger = Logger.getInstance(ResponseCacheService.class);
+
+    private static final int FILE_VERSION = 1;
+    private static final long MAX_CHARS = 4L * 1024 * 1024;
+
+    private static final class Entry {
+        private final String response;
+        private final long createdAt;
+
+        private Entry(String response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final LruCache.Codec<Entry> CODEC = new LruCache.Codec<>() {
+        @Override
+        public void write(DataOutputStream out, Entry entry) throws IOException {
+            out.writeLong(entry.createdAt);
+            LruCache.writeString(out, entry.response);
+        }
+
+        @Override
+        public Entry read(DataInputStream in) throws IOException {
+            long createdAt = in.readLong();
+
+            return new Entry(LruCache.readString(in), createdAt);
+        }
+    };
+
+    private final LruCache<Entry> cache = new LruCache<>(MAX_CHARS, entry -> entry.response.length());
+    private volatile boolean loaded;
+
+    public static ResponseCacheService getInstance() {
+        return ApplicationManager.getApplication().getService(ResponseCacheService.class);
+    }
+
+    public static boolean isEnabled() {
+        return PropertiesComponent.getInstance().getBoolean(AppConstant.RESPONSE_CACHE, false);
+    }
+
+    // 返回未过期的缓存回答，未命中时返回 null
+    public String get(RequestBody requestBody) {
+        ensureLoaded();
+
+        String key = requestBody.sha256();
+        Entry entry = cache.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.createdAt < expiredBefore()) {
+            cache.remove(key);
+            return null;
+        }
+
+        return entry.response;
+    }
+
+    public void put(RequestBody requestBody, String response) {
+        if (response.isEmpty()) {
+            return;
+        }
+
+        ensureLoaded();
+        cache.put(requestBody.sha256(), new Entry(response, System.currentTimeMillis()));
+        removeExpired();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private void removeExpired() {
+        long expiredBefore = expiredBefore();
+        cache.removeIf(entry -> entry.createdAt < expiredBefore);
+    }
+
+    // 早于该时间创建的条目已经过期
+    private static long expiredBefore() {
+        int ttlHours = PropertiesComponent
+            .getInstance()
+            .getInt(AppConstant.RESPONSE_CACHE_TTL, AppConstant.DEFAULT_RESPONSE_CACHE_TTL);
+
+        return System.currentTimeMillis() - TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    private static Path cacheFile() {
+        return Path.of(PathManager.getSystemPath(), "deepseek-coder", "response-cache.bin");
+    }
+
+    // 只在第一次使用时读取磁盘，关闭缓存的用户不承担加载开销
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (cache) {
+            if (!loaded) {
+                load();
+                loaded = true;
+            }
+        }
+    }
+
+    private void load() {
+        try {
+            cache.load(cacheFile(), FILE_VERSION, CODEC);
+            removeExpired();
+        } catch (IOException e) {
+            logger.warn("Error loading response cache: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try {
+            cache.save(cacheFile(), FILE_VERSION, CODEC);
+        } catch (IOException e) {
+            logger.warn("Error saving response cache: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (isEnabled()) {
+            if (loaded) {
+                save();
+            }
+        } else {
+            // 关闭缓存后删除磁盘上的旧数据
+            try {
+                Files.deleteIfExists(cacheFile());
+            } catch (IOException e) {
+                logger.warn("Error deleting response cache: " + e.getMessage());
+            }
+        }
+    }
+}
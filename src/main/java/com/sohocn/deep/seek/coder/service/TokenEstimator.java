@@ -0,0 +1,117 @@
+package com.sohocn.deep.seek.coder.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+
+/**
+ * 本地估算文本的 token 数，不需要加载分词表。
+ * <p>
+ * 按 DeepSeek 文档给出的经验比例估算：1 个英文字符约 0.3 个 token，1 个中文字符约 0.6 个 token。
+ * 每条消息的估算结果按对象缓存，消息从对话模型中移除后缓存随之回收。
+ * <p>
+ * 每次请求结束后用服务端返回的 usage 校准：估算值乘以校准系数，系数按实际与估算的比值滑动平均并保存在设置中。
+ */
+public final class TokenEstimator {
+    public static final int MESSAGE_OVERHEAD = 4; // 每条消息的角色和分隔符
+
+    private static final double ASCII_TOKENS = 0.3;
+    private static final double NON_ASCII_TOKENS = 0.6;
+    private static final double SMOOTHING = 0.2; // 新样本在滑动平均中的权重
+    private static final double MIN_FACTOR = 0.3;
+    private static final double MAX_FACTOR = 3.0;
+    private static final int MIN_SAMPLE_TOKENS = 32; // 太短的请求误差主要来自固定开销，不参与校准
+
+    // 缓存未校准的估算值，校准系数变化后不需要清空
+    private final Map<ChatMessage, Double> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private volatile double factor;
+
+    public TokenEstimator() {
+        String value = PropertiesComponent.getInstance().getValue(AppConstant.TOKEN_CALIBRATION);
+        double saved = 1.0;
+
+        try {
+            if (value != null) {
+                saved = Double.parseDouble(value);
+            }
+        } catch (NumberFormatException ignored) {
+            // 使用默认系数
+        }
+
+        factor = clamp(saved);
+    }
+
+    public static TokenEstimator getInstance() {
+        return ApplicationManager.getApplication().getService(TokenEstimator.class);
+    }
+
+    public int estimate(String text) {
+        return calibrated(raw(text));
+    }
+
+    // 估算一条消息的 token 数，包含消息本身的开销
+    public int estimate(ChatMessage message) {
+        Double cached = cache.get(message);
+
+        if (cached == null) {
+            cached = raw(message.getContent()) + MESSAGE_OVERHEAD;
+            cache.put(message, cached);
+        }
+
+        return calibrated(cached);
+    }
+
+    // estimated 为发送前用 estimate 得到的 prompt 估算值，actual 为服务端返回的 prompt_tokens
+    public void calibrate(int estimated, int actual) {
+        if (estimated < MIN_SAMPLE_TOKENS || actual <= 0) {
+            return;
+        }
+
+        // 先还原出未校准的估算值，实际值与它的比值就是这次请求的理想系数
+        double current = factor;
+        double ideal = actual / (estimated / current);
+        double updated = clamp(current + (ideal - current) * SMOOTHING);
+
+        factor = updated;
+        PropertiesComponent.getInstance().setValue(AppConstant.TOKEN_CALIBRATION, String.valueOf(updated));
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    private int calibrated(double raw) {
+        return (int)Math.ceil(raw * factor);
+    }
+
+    private static double raw(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        double tokens = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            // 代理对只按一个字符计算
+            if (Character.isLowSurrogate(c)) {
+                continue;
+            }
+
+            tokens += c < 0x80 ? ASCII_TOKENS : NON_ASCII_TOKENS;
+        }
+
+        return tokens;
+    }
+
+    private static double clamp(double value) {
+        return Double.isNaN(value) ? 1.0 : Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, value));
+    }
+}
@@ -13,6 +13,8 @@ import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.ui.JBColor;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.components.JBTextField;
@@ -21,18 +23,25 @@ import com.intellij.util.ui.JBUI;
 import com.sohocn.deep.seek.coder.constant.AppConstant;
 import com.sohocn.deep.seek.coder.event.ChangeEvent;
 import com.sohocn.deep.seek.coder.event.ChangeNotifier;
+import com.sohocn.deep.seek.coder.service.ResponseCacheService;
 import com.sohocn.deep.seek.coder.util.LayoutUtil;
 
 public class DeepSeekSettingsComponent {
     private final JPanel mainPanel;
     private final JBTextField apiKeyField;
     private final ComboBox<String> modelField;
+    private final JBTextField endpointField;
     private final JTextArea promptField;
+    private final JBIntSpinner tokenBudgetField;
+    private final JBCheckBox responseCacheField;
     private final PropertiesComponent instance = PropertiesComponent.getInstance();
 
     private String apiKey;
     private String prompt;
     private String model;
+    private String endpoint;
+    private int tokenBudget;
+    private boolean responseCache;
 
     public DeepSeekSettingsComponent() {
         Map<String, String> options = new HashMap<>();
@@ -42,7 +51,14 @@ public class DeepSeekSettingsComponent {
         // 初始化组件
         apiKeyField = new JBTextField();
         modelField = new ComboBox<>(options.keySet().toArray(new String[0]));
+        endpointField = new JBTextField();
+        endpointField.getEmptyText().setText(AppConstant.API_URL);
+        endpointField.setToolTipText("Leave empty to use the official API, e.g. point it to a local mock server");
         promptField = new JTextArea();
+        tokenBudgetField = new JBIntSpinner(AppConstant.DEFAULT_CONTEXT_TOKEN_BUDGET, 0, 128000, 500);
+        responseCacheField = new JBCheckBox("Reuse answers to identical requests");
+        responseCacheField.setOpaque(false);
+        responseCacheField.setToolTipText("Replay the saved answer when model, prompt, context and question match");
 
         modelField.setRenderer(new DefaultListCellRenderer() {
             @Override
@@ -73,6 +89,7 @@ public class DeepSeekSettingsComponent {
         // API Key 设置
         apiKeyField.setPreferredSize(new Dimension(500, 30));
         modelField.setPreferredSize(new Dimension(500, 30));
+        endpointField.setPreferredSize(new Dimension(500, 30));
 
         // 创建 API Key 链接标签
         JLabel apiKeyLink = new JLabel("<html><a href=''>Click here to apply for an API KEY</a></html>");
@@ -120,6 +137,21 @@ public class DeepSeekSettingsComponent {
         modelPanel.add(modelLabel, BorderLayout.WEST);
         modelPanel.add(modelField, BorderLayout.CENTER);
 
+        JPanel endpointPanel = new JPanel(new BorderLayout());
+        endpointPanel.setOpaque(false);
+        JBLabel endpointLabel = new JBLabel("Api endpoint:");
+        endpointLabel.setPreferredSize(new Dimension(100, 30));
+        endpointPanel.add(endpointLabel, BorderLayout.WEST);
+        endpointPanel.add(endpointField, BorderLayout.CENTER);
+
+        JPanel tokenBudgetPanel = new JPanel(new BorderLayout());
+        tokenBudgetPanel.setOpaque(false);
+        JBLabel tokenBudgetLabel = new JBLabel("Context tokens:");
+        tokenBudgetLabel.setPreferredSize(new Dimension(100, 30));
+        tokenBudgetLabel.setToolTipText("Maximum estimated tokens of chat history sent as context");
+        tokenBudgetPanel.add(tokenBudgetLabel, BorderLayout.WEST);
+        tokenBudgetPanel.add(tokenBudgetField, BorderLayout.CENTER);
+
         // 修改角色描述面板布局
         JPanel roleDescPanel = new JPanel(new BorderLayout(5, 0)); // 添加水平间距
         roleDescPanel.setOpaque(false);
@@ -156,9 +188,21 @@ public class DeepSeekSettingsComponent {
 
         gbc.gridy = 3;
         gbc.insets = JBUI.insetsTop(10);
+        mainPanel.add(endpointPanel, gbc);
+
+        gbc.gridy = 4;
+        gbc.insets = JBUI.insetsTop(10);
         mainPanel.add(roleDescPanel, gbc);
 
+        gbc.gridy = 5;
+        gbc.insets = JBUI.insetsTop(10);
+        mainPanel.add(tokenBudgetPanel, gbc);
+
         gbc.gridy = 6;
+        gbc.insets = JBUI.insets(5, 100, 0, 0); // 与输入框对齐
+        mainPanel.add(responseCacheField, gbc);
+
+        gbc.gridy = 7;
         gbc.weighty = 1.0;
         gbc.fill = GridBagConstraints.BOTH;
         mainPanel.add(new JPanel(), gbc); // 填充剩余空间
@@ -172,10 +216,16 @@ public class DeepSeekSettingsComponent {
         apiKey = instance.getValue(AppConstant.API_KEY, "");
         model = instance.getValue(AppConstant.MODEL, AppConstant.DEFAULT_MODEL); // 提供默认值
         prompt = instance.getValue(AppConstant.PROMPT, AppConstant.DEFAULT_PROMPT); // 提供默认值
+        endpoint = instance.getValue(AppConstant.API_ENDPOINT, "");
+        tokenBudget = instance.getInt(AppConstant.CONTEXT_TOKEN_BUDGET, AppConstant.DEFAULT_CONTEXT_TOKEN_BUDGET);
+        responseCache = instance.getBoolean(AppConstant.RESPONSE_CACHE, false);
 
         apiKeyField.setText(apiKey);
         modelField.setSelectedItem(model);
+        endpointField.setText(endpoint);
         promptField.setText(prompt);
+        tokenBudgetField.setNumber(tokenBudget);
+        responseCacheField.setSelected(responseCache);
     }
 
     public JPanel getPanel() {
@@ -190,27 +240,52 @@ public class DeepSeekSettingsComponent {
         return (String)modelField.getSelectedItem();
     }
 
+    public String getEndpoint() {
+        return endpointField.getText().trim();
+    }
+
     public String getPrompt() {
         return promptField.getText().trim();
     }
 
+    public int getTokenBudget() {
+        return tokenBudgetField.getNumber();
+    }
+
+    public boolean isResponseCache() {
+        return responseCacheField.isSelected();
+    }
+
     public boolean isModified() {
         String currentApiKey = getApiKey();
         String currentPrompt = getPrompt();
         String currentModel = getModel();
 
-        return !currentApiKey.equals(apiKey) || !currentPrompt.equals(prompt) || !currentModel.equals(model);
+        return !currentApiKey.equals(apiKey) || !currentPrompt.equals(prompt) || !currentModel.equals(model)
+            || !getEndpoint().equals(endpoint) || getTokenBudget() != tokenBudget
+            || isResponseCache() != responseCache;
     }
 
     public void apply() {
         apiKey = getApiKey();
         model = getModel();
         prompt = getPrompt();
+        endpoint = getEndpoint();
+        tokenBudget = getTokenBudget();
+        responseCache = isResponseCache();
 
         // 直接保存到 PropertiesComponent
         instance.setValue(AppConstant.API_KEY, apiKey);
         instance.setValue(AppConstant.MODEL, model);
         instance.setValue(AppConstant.PROMPT, prompt);
+        instance.setValue(AppConstant.API_ENDPOINT, endpoint, "");
+        instance.setValue(AppConstant.CONTEXT_TOKEN_BUDGET, tokenBudget, AppConstant.DEFAULT_CONTEXT_TOKEN_BUDGET);
+        instance.setValue(AppConstant.RESPONSE_CACHE, responseCache);
+
+        // 关闭回答缓存时丢弃已缓存的内容
+        if (!responseCache) {
+            ResponseCacheService.getInstance().clear();
+        }
 
         // 发送通知
         MessageBus messageBus = ApplicationManager.getApplication().getMessageBus();
@@ -220,6 +295,9 @@ public class DeepSeekSettingsComponent {
     public void reset() {
         apiKeyField.setText(apiKey);
         modelField.setSelectedItem(model);
+        endpointField.setText(endpoint);
         promptField.setText(prompt);
+        tokenBudgetField.setNumber(tokenBudget);
+        responseCacheField.setSelected(responseCache);
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.sohocn.deep.seek.coder.sidebar;
+
+import java.util.function.Consumer;
+
+import javax.swing.*;
+
+/**
+ * 合并流式返回的分片，按帧率在 EDT 上批量刷新，避免每个分片都提交一次界面更新。
+ * <p>
+ * append 可以在任意线程调用；onFlush 总是在 EDT 上执行，参数为上次刷新之后新增的内容。
+ */
+public class ChunkAccumulator {
+    private final StringBuilder pending = new StringBuilder();
+    private final Consumer<String> onFlush;
+    private final Timer timer;
+
+    public ChunkAccumulator(int frameRate, Consumer<String> onFlush) {
+        this.onFlush = onFlush;
+        this.timer = new Timer(1000 / Math.max(1, frameRate), e -> flush());
+        this.timer.setCoalesce(true);
+    }
+
+    // 需要在 EDT 上调用
+    public void start() {
+        timer.start();
+    }
+
+    public void append(String chunk) {
+        synchronized (pending) {
+            pending.append(chunk);
+        }
+    }
+
+    // 停止定时刷新，并保证剩余内容在 afterFlush 之前刷新到界面
+    public void complete(Runnable afterFlush) {
+        SwingUtilities.invokeLater(() -> {
+            timer.stop();
+            flush();
+            afterFlush.run();
+        });
+    }
+
+    // 放弃尚未刷新的内容
+    public void cancel() {
+        SwingUtilities.invokeLater(() -> {
+            timer.stop();
+
+            synchronized (pending) {
+                pending.setLength(0);
+            }
+        });
+    }
+
+    private void flush() {
+        String delta;
+
+        synchronized (pending) {
+            if (pending.length() == 0) {
+                return;
+            }
+
+            delta = pending.toString();
+            pending.setLength(0);
+        }
+
+        onFlush.accept(delta);
+    }
+}
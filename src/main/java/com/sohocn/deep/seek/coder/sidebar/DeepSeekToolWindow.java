@@ -2,22 +2,15 @@ package com.sohocn.deep.seek.coder.sidebar;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.Supplier;
 
 import javax.swing.*;
 import javax.swing.plaf.basic.BasicScrollBarUI;
+import javax.swing.text.html.HTMLDocument;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectManager;
-import com.intellij.openapi.project.ProjectManagerListener;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import com.intellij.ui.Gray;
@@ -28,30 +21,46 @@ import com.intellij.ui.components.JBTextArea;
 import com.intellij.util.ui.JBUI;
 import com.sohocn.deep.seek.coder.constant.AppConstant;
 import com.sohocn.deep.seek.coder.event.ChangeNotifier;
+import com.sohocn.deep.seek.coder.service.ConversationService;
 import com.sohocn.deep.seek.coder.service.DeepSeekService;
+import com.sohocn.deep.seek.coder.service.HtmlCacheService;
+import com.sohocn.deep.seek.coder.service.HttpClientService;
+import com.sohocn.deep.seek.coder.service.RequestScheduler;
 import com.sohocn.deep.seek.coder.util.LayoutUtil;
-import com.sohocn.deep.seek.coder.util.MarkdownUtil;
 
 import groovyjarjarantlr4.v4.runtime.misc.NotNull;
 
 public class DeepSeekToolWindow {
-    private static final int MESSAGE_HORIZONTAL_MARGIN = 20; // 左右边距各20像素
-    private static final Gson gson = new GsonBuilder().create();
+    private static final int HISTORY_PAGE_SIZE = 10; // 每次从存储中读取的消息数，首页大约一屏
+
     private final JPanel content;
-    private final JBPanel<JBPanel<?>> chatPanel;
+    private final MessageListPanel chatPanel;
     private final JBTextArea inputArea = new JBTextArea();
     private final DeepSeekService deepSeekService;
+    private final ConversationService conversationService;
+    private final RequestScheduler requestScheduler;
     private final PropertiesComponent instance = PropertiesComponent.getInstance();
 
+    // 以下字段只在 EDT 上访问：显示内容对应的修订号（-1 表示尚未加载）、最早一条消息在存储中的下标，
+    // 以及每次重新加载时递增的代数，用于丢弃过期的读取结果
+    private int historyRevision = -1;
+    private int historyFrom;
+    private int historyGeneration;
+    private boolean historyLoading;
+    private boolean backfilling;
+
     public DeepSeekToolWindow(Project project) {
-        this.deepSeekService = new DeepSeekService();
+        this.deepSeekService = new DeepSeekService(project);
+        this.conversationService = ConversationService.getInstance(project);
+        this.requestScheduler = RequestScheduler.getInstance(project);
 
         content = new JPanel(new BorderLayout());
         content.setBackground(LayoutUtil.backgroundColor()); // 使用统一背景色
 
-        // 聊天区域
-        chatPanel = new JBPanel<>(new VerticalFlowLayout(VerticalFlowLayout.TOP, 0, 0));
+        // 聊天区域，只为可见的消息创建气泡
+        chatPanel = new MessageListPanel(this::createMessageBubble);
         chatPanel.setBackground(LayoutUtil.backgroundColor()); // 使用统一背景色
+        chatPanel.setTopListener(this::loadOlderHistory);
 
         JBScrollPane chatScrollPane = new JBScrollPane(chatPanel);
         chatScrollPane.setBackground(LayoutUtil.backgroundColor()); // 使用统一背景色
@@ -75,6 +84,9 @@ public class DeepSeekToolWindow {
         inputArea.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
+                // 开始输入时预先建立连接，发送时直接复用
+                prewarmConnection();
+
                 if (e.getKeyCode() == KeyEvent.VK_ENTER && !e.isShiftDown()) {
                     e.consume();
                     sendMessage();
@@ -96,33 +108,37 @@ public class DeepSeekToolWindow {
             .connect()
             .subscribe(ChangeNotifier.TOPIC, (ChangeNotifier)event -> SwingUtilities.invokeLater(this::restConfigItem));
 
-        addComponentListener(); // 添加大小变化监听
-
-        // 订阅项目关闭事件
-        project.getMessageBus().connect().subscribe(ProjectManager.TOPIC, new ProjectManagerListener() {
-            @Override
-            public void projectClosing(@NotNull Project project) {
-                saveChatHistory();
-            }
-        });
-
         // 确保在所有组件初始化完成后加载历史记录
         ApplicationManager.getApplication().invokeLater(() -> {
             loadChatHistory();
             restConfigItem();
         });
 
+        // 工具窗口内容在首次打开时创建，此时 toolWindowShown 可能已经触发过
+        prewarmConnection();
+
         // 添加窗口激活监听器
         project.getMessageBus().connect().subscribe(ToolWindowManagerListener.TOPIC, new ToolWindowManagerListener() {
             @Override
             public void toolWindowShown(@NotNull ToolWindow toolWindow) {
-                if ("DeepSeek".equals(toolWindow.getId())) {
+                // 打开工具窗口时预先建立连接，历史记录与存储一致时不会重新加载
+                if (AppConstant.PLUGIN_NAME.equals(toolWindow.getId())) {
+                    prewarmConnection();
                     loadChatHistory();
                 }
             }
         });
     }
 
+    // 已经有空闲连接或刚预热过时直接返回，可以频繁调用
+    private void prewarmConnection() {
+        String apiKey = instance.getValue(AppConstant.API_KEY);
+
+        if (apiKey != null && !apiKey.trim().isEmpty()) {
+            HttpClientService.getInstance().prewarm(DeepSeekService.getApiUrl());
+        }
+    }
+
     private void scrollToBottom() {
         SwingUtilities.invokeLater(() -> {
             JScrollPane scrollPane = (JScrollPane)chatPanel.getParent().getParent();
@@ -143,51 +159,62 @@ public class DeepSeekToolWindow {
             // 确保在 EDT 线程中添加消息
             SwingUtilities.invokeLater(() -> {
                 // 显示用户消息
-                JBPanel<JBPanel<?>> userBubble = createMessageBubble(message, true);
-                userBubble.putClientProperty("originalMessage", message);
-                chatPanel.add(userBubble);
+                chatPanel.addMessage(message, true);
 
-                // 创建 AI 回复的气泡
-                JBPanel<JBPanel<?>> aiBubble = createMessageBubble("", false);
-                chatPanel.add(aiBubble);
-                chatPanel.revalidate();
-                chatPanel.repaint();
+                // 创建 AI 回复的气泡，输出期间保持创建状态
+                MessageListPanel.Entry aiEntry = chatPanel.addMessage("", false);
+                chatPanel.setPinned(aiEntry, true);
 
                 // 立即滚动到底部
                 scrollToBottom();
 
-                // 在后台线程中发送请求
-                ApplicationManager.getApplication().executeOnPooledThread(() -> {
-                    try {
-                        StringBuilder fullResponse = new StringBuilder();
-
-                        this.deepSeekService.streamMessage(message, chunk -> SwingUtilities.invokeLater(() -> {
-                            fullResponse.append(chunk);
-                            String currentResponse = fullResponse.toString();
+                // 分片先合并，再按帧率批量交给后台渲染，只重新渲染最后一个未结束的块，EDT 上只替换文档
+                StreamingDocumentRenderer renderer = new StreamingDocumentRenderer(
+                    (text, document) -> chatPanel.setDocument(aiEntry, text, document));
+                int frameRate = instance.getInt(AppConstant.FRAME_RATE, AppConstant.DEFAULT_FRAME_RATE);
 
-                            aiBubble.putClientProperty("originalMessage", currentResponse);
+                ChunkAccumulator accumulator = new ChunkAccumulator(frameRate, renderer::append);
+                accumulator.start();
 
-                            // 更新消息内容
-                            JEditorPane textArea = (JEditorPane)aiBubble.getClientProperty("textArea");
-                            textArea.setText(MarkdownUtil.render(currentResponse));
-
-                            // 调整大小，考虑侧边栏宽度
-                            int maxWidth = chatPanel.getWidth() - (MESSAGE_HORIZONTAL_MARGIN * 2);
-                            adjustMessageSize(aiBubble, maxWidth);
+                // 交给请求调度在后台执行，可以随时取消
+                requestScheduler.submit(handle -> {
+                    try {
+                        StringBuilder response = new StringBuilder();
 
-                            // 重新布局
-                            aiBubble.revalidate();
-                            chatPanel.revalidate();
-                        }),
+                        this.deepSeekService.streamMessage(message, handle, chunk -> {
+                            response.append(chunk);
+                            accumulator.append(chunk);
+                        },
                             // 忽略 token 信息
-                            () -> SwingUtilities.invokeLater(() -> {
-                                inputArea.setEnabled(true);
-                                inputArea.requestFocus();
-                                scrollToBottom();
-                            }));
+                            () -> {
+                                // 回复完整（或被取消）后再把这一轮对话追加到记录中，没有收到内容时不保存
+                                boolean empty = response.length() == 0;
+                                int revision = empty ? -1 : conversationService.addTurn(message, response.toString());
+
+                                accumulator.complete(() -> renderer.complete(() -> {
+                                    if (empty) {
+                                        chatPanel.removeMessage(aiEntry);
+                                    } else {
+                                        HtmlCacheService.getInstance().put(renderer.getText(), renderer.getHtml());
+                                        chatPanel.setPinned(aiEntry, false);
+
+                                        // 这一轮已经显示在界面上，期间没有其它修改时视图仍与存储一致
+                                        if (historyRevision == revision - 1) {
+                                            historyRevision = revision;
+                                        }
+                                    }
+
+                                    inputArea.setEnabled(true);
+                                    inputArea.requestFocus();
+                                    scrollToBottom();
+                                }));
+                            });
                     } catch (Exception e) {
+                        accumulator.cancel();
+                        renderer.cancel();
+
                         SwingUtilities.invokeLater(() -> {
-                            chatPanel.remove(aiBubble);
+                            chatPanel.removeMessage(aiEntry);
                             addMessageBubble("Error: " + e.getMessage());
                             inputArea.setEnabled(true);
                             inputArea.requestFocus();
@@ -199,24 +226,12 @@ public class DeepSeekToolWindow {
     }
 
     private void addMessageBubble(String message) {
-        JBPanel<JBPanel<?>> bubble = createMessageBubble(message, false);
-        chatPanel.add(bubble);
-
-        // 检查是否超过历史记录限制
-        int historyLimit = instance.getInt(AppConstant.HISTORY_LIMIT, 10);
-        int maxMessages = historyLimit * 2; // *2 因为每次对话包含用户消息和AI回复
-
-        // 如果超过限制，从头开始删除多余的消息
-        while (chatPanel.getComponentCount() > maxMessages) {
-            chatPanel.remove(0);
-        }
-
-        chatPanel.revalidate();
-        chatPanel.repaint();
+        chatPanel.addMessage(message, false);
         smoothScrollToBottom();
     }
 
-    private JBPanel<JBPanel<?>> createMessageBubble(String message, boolean isUser) {
+    // 由消息列表在气泡进入视口时调用，document 为在后台构建好的消息内容
+    private JBPanel<JBPanel<?>> createMessageBubble(HTMLDocument document, boolean isUser) {
         JBPanel<JBPanel<?>> bubble = new JBPanel<>(new BorderLayout());
         bubble.setBackground(LayoutUtil.backgroundColor());
         bubble.setBorder(JBUI.Borders.empty(10));
@@ -262,10 +277,9 @@ public class DeepSeekToolWindow {
         textArea.setOpaque(false);
 
         // 设置消息内容
-        textArea.setText(MarkdownUtil.render(message));
+        textArea.setDocument(document);
 
-        // 存储原始消息和文本区域
-        bubble.putClientProperty("originalMessage", message);
+        // 存储文本区域
         bubble.putClientProperty("textArea", textArea);
         bubble.putClientProperty("textPanel", messagePanel);
 
@@ -276,26 +290,6 @@ public class DeepSeekToolWindow {
         return bubble;
     }
 
-    private void adjustMessageSize(JBPanel<JBPanel<?>> bubble, int maxWidth) {
-        if (maxWidth <= 0)
-            return;
-
-        JEditorPane textArea = (JEditorPane)bubble.getClientProperty("textArea");
-        JBPanel<?> textPanel = (JBPanel<?>)bubble.getClientProperty("textPanel");
-
-        // 计算实际可用宽度
-        int availableWidth = Math.min(maxWidth, chatPanel.getParent().getWidth() - 40);
-
-        // 设置最大宽度并计算首选高度
-        textArea.setSize(availableWidth, Short.MAX_VALUE);
-        int preferredHeight = textArea.getPreferredSize().height;
-
-        // 设置面板大小
-        textPanel.setPreferredSize(new Dimension(availableWidth, preferredHeight + 10));
-
-        bubble.revalidate();
-    }
-
     private void restConfigItem() {
         String apiKey = instance.getValue(AppConstant.API_KEY);
 
@@ -305,96 +299,62 @@ public class DeepSeekToolWindow {
         inputArea.setEnabled(hasKey);
     }
 
-    // 添加组件大小变化监听
-    private void addComponentListener() {
-        content.addComponentListener(new ComponentAdapter() {
-            @Override
-            public void componentResized(ComponentEvent e) {
-                // 当窗口大小改变时，重新调整所有消息气泡的大小
-                int maxWidth = chatPanel.getWidth() - (MESSAGE_HORIZONTAL_MARGIN * 2);
-
-                for (Component component : chatPanel.getComponents()) {
-                    if (component instanceof JBPanel) {
-                        adjustMessageSize((JBPanel<JBPanel<?>>)component, maxWidth);
-                    }
-                }
-                chatPanel.revalidate();
-            }
-        });
-    }
+    // 先在后台读取并显示最近的一页，更早的消息在向上滚动时补充；显示的内容与存储一致时直接返回
+    void loadChatHistory() {
+        if (historyLoading || historyRevision == conversationService.getRevision()) {
+            return;
+        }
 
-    // 保存聊天记录
-    private void saveChatHistory() {
-        try {
-            List<ChatMessage> messages = new ArrayList<>();
-            Component[] components = chatPanel.getComponents();
+        historyLoading = true;
 
-            for (int i = 0; i < components.length; i++) {
-                if (components[i] instanceof JBPanel<?> bubble) {
-                    String message = (String)bubble.getClientProperty("originalMessage");
+        conversationService.readTail(HISTORY_PAGE_SIZE).thenAccept(page -> SwingUtilities.invokeLater(() -> {
+            boolean reload = historyRevision >= 0;
 
-                    // 通过判断消息的位置来确定是否为用户消息
-                    // 用户消息和 AI 回复总是成对出现，用户消息在偶数位置
-                    boolean isUser = (i % 2 == 0);
+            historyLoading = false;
+            historyRevision = page.getRevision();
+            historyFrom = page.getFrom();
+            historyGeneration++;
 
-                    if (message != null && !message.isEmpty()) {
-                        messages.add(new ChatMessage(message, isUser));
-                    }
-                }
+            // 首次加载时没有历史记录就保持原样，重新加载（例如清空之后）时总是替换
+            if (page.getMessages().isEmpty() && !reload) {
+                return;
             }
 
-            // 限制保存的消息数量
-            int historyLimit = instance.getInt(AppConstant.HISTORY_LIMIT, 10);
-            if (messages.size() > historyLimit * 2) {
-                messages = messages.subList(messages.size() - 10, messages.size());
-            }
+            // 只更新列表模型，气泡在进入视口时才创建
+            chatPanel.setMessages(page.getMessages());
 
-            if (!messages.isEmpty()) {
-                String json = gson.toJson(messages);
-                instance.setValue(AppConstant.CHAT_HISTORY, json);
+            if (!page.getMessages().isEmpty()) {
+                // 等待一个短暂的时间，确保组件已经完全布局
+                Timer timer = new Timer(100, e -> {
+                    smoothScrollToBottom();
+                    ((Timer)e.getSource()).stop();
+                });
+                timer.setRepeats(false);
+                timer.start();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        }));
     }
 
-    // 修改加载聊天记录方法
-    private void loadChatHistory() {
-        try {
-            String json = instance.getValue(AppConstant.CHAT_HISTORY);
-
-            if (json != null && !json.isEmpty()) {
-                Type listType = new TypeToken<ArrayList<ChatMessage>>() {}.getType();
-                List<ChatMessage> messages = gson.fromJson(json, listType);
-
-                if (messages != null && !messages.isEmpty()) {
-                    chatPanel.removeAll();
+    // 视口接近顶部时读取更早的一页插入到列表开头
+    private void loadOlderHistory() {
+        if (backfilling || historyLoading || historyRevision < 0 || historyFrom <= 0) {
+            return;
+        }
 
-                    for (ChatMessage message : messages) {
-                        // 创建消息气泡，传入正确的 isUser 参数
-                        JBPanel<JBPanel<?>> bubble = createMessageBubble(message.getContent(), message.isUser());
-                        bubble.putClientProperty("originalMessage", message.getContent());
-                        chatPanel.add(bubble);
-                    }
+        backfilling = true;
+        int generation = historyGeneration;
 
-                    chatPanel.revalidate();
-                    chatPanel.repaint();
+        conversationService
+            .readBefore(historyFrom, HISTORY_PAGE_SIZE)
+            .thenAccept(page -> SwingUtilities.invokeLater(() -> {
+                backfilling = false;
 
-                    // 使用 SwingUtilities.invokeLater 确保在 UI 更新后滚动
-                    SwingUtilities.invokeLater(() -> {
-                        // 等待一个短暂的时间，确保组件已经完全布局
-                        Timer timer = new Timer(100, e -> {
-                            smoothScrollToBottom();
-                            ((Timer)e.getSource()).stop();
-                        });
-                        timer.setRepeats(false);
-                        timer.start();
-                    });
+                // 读取期间重新加载过的结果直接丢弃
+                if (generation == historyGeneration) {
+                    historyFrom = page.getFrom();
+                    chatPanel.prependMessages(page.getMessages());
                 }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+            }));
     }
 
     // 创建工具栏按钮
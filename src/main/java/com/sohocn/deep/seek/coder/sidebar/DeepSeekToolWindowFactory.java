@@ -1,36 +1,121 @@
 package com.sohocn.deep.seek.coder.sidebar;
 
+import java.awt.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
 
 import org.jetbrains.annotations.NotNull;
 
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.options.ShowSettingsUtil;
+import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
+import com.intellij.ui.components.JBLoadingPanel;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.messages.MessageBusConnection;
 import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+import com.sohocn.deep.seek.coder.service.ConversationService;
+import com.sohocn.deep.seek.coder.service.HtmlCacheService;
+import com.sohocn.deep.seek.coder.service.HttpClientService;
+import com.sohocn.deep.seek.coder.service.RequestScheduler;
+import com.sohocn.deep.seek.coder.util.LayoutUtil;
 
-public class DeepSeekToolWindowFactory implements ToolWindowFactory {
+/**
+ * 工具窗口不依赖索引，实现 DumbAware 后索引期间也可以使用。
+ * <p>
+ * 打开项目时只放一个加载中的占位面板；服务创建、存储打开和历史记录读取在后台完成，
+ * 之后等到工具窗口可见时才在 EDT 上创建真正的界面，插件对项目打开耗时的影响接近于零。
+ */
+public class DeepSeekToolWindowFactory implements ToolWindowFactory, DumbAware {
     private final PropertiesComponent instance = PropertiesComponent.getInstance();
 
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
-        DeepSeekToolWindow deepSeekToolWindow = new DeepSeekToolWindow(project);
+        long start = System.nanoTime();
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+        JBLoadingPanel placeholder = new JBLoadingPanel(new BorderLayout(), toolWindow.getDisposable());
+        placeholder.setBackground(LayoutUtil.backgroundColor()); // 使用统一背景色
+        placeholder.startLoading();
+
         ContentFactory contentFactory = ContentFactory.getInstance();
-        Content content = contentFactory.createContent(deepSeekToolWindow.getContent(), "", false);
+        Content content = contentFactory.createContent(placeholder, "", false);
         toolWindow.getContentManager().addContent(content);
 
-        createTitleBarActions(project, toolWindow);
+        // 界面创建之前标题栏按钮也可以使用
+        AtomicReference<DeepSeekToolWindow> window = new AtomicReference<>();
+        createTitleBarActions(project, toolWindow, window);
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+
+            // 创建服务、打开存储并读取最近的消息
+            long initStart = System.nanoTime();
+            ConversationService.getInstance(project).preload();
+            RequestScheduler.getInstance(project);
+            HttpClientService.getInstance();
+            HtmlCacheService.getInstance();
+            metrics.recordSince(MetricsRegistry.STARTUP_BACKGROUND_INIT, initStart);
+
+            ApplicationManager
+                .getApplication()
+                .invokeLater(() -> whenShown(project, toolWindow, content, start, shownAt -> {
+                    long buildStart = System.nanoTime();
+                    window.set(buildContent(project, content, placeholder));
+
+                    metrics.recordSince(MetricsRegistry.STARTUP_BUILD_UI, buildStart);
+                    metrics.recordSince(MetricsRegistry.STARTUP_READY, shownAt);
+                }), project.getDisposed());
+        });
+
+        metrics.recordMicrosSince(MetricsRegistry.STARTUP_CREATE_CONTENT, start);
+    }
+
+    // 用真正的界面替换占位面板
+    private static DeepSeekToolWindow buildContent(Project project, Content content, JBLoadingPanel placeholder) {
+        DeepSeekToolWindow deepSeekToolWindow = new DeepSeekToolWindow(project);
+        content.setComponent(deepSeekToolWindow.getContent());
+        placeholder.stopLoading();
+
+        return deepSeekToolWindow;
+    }
+
+    // 工具窗口可见时立即执行，否则等到第一次打开；传给 action 的是开始创建（或打开）的时间
+    private static void whenShown(Project project, ToolWindow toolWindow, Content content, long createdAt,
+        LongConsumer action) {
+        if (toolWindow.isVisible()) {
+            action.accept(createdAt);
+            return;
+        }
+
+        MessageBusConnection connection = project.getMessageBus().connect(content);
+        connection.subscribe(ToolWindowManagerListener.TOPIC, new ToolWindowManagerListener() {
+            @Override
+            public void toolWindowShown(@NotNull ToolWindow shown) {
+                if (shown == toolWindow) {
+                    connection.disconnect();
+                    action.accept(System.nanoTime());
+                }
+            }
+        });
     }
 
-    private void createTitleBarActions(Project project, ToolWindow toolWindow) {
+    private void createTitleBarActions(Project project, ToolWindow toolWindow,
+        AtomicReference<DeepSeekToolWindow> window) {
         AnAction button1 = new AnAction("Configure DeepSeek API Key", "", AllIcons.Actions.ListFiles) {
             @Override
             public void actionPerformed(@NotNull AnActionEvent e) {
@@ -48,11 +133,45 @@ public class DeepSeekToolWindowFactory implements ToolWindowFactory {
                 if (result == Messages.YES) {
                     // 清除保存的历史记录
                     instance.unsetValue(AppConstant.CHAT_HISTORY);
+
+                    ConversationService.getInstance(project).clear();
+
+                    // 存储已经变化，界面已经创建时随之重新加载
+                    DeepSeekToolWindow deepSeekToolWindow = window.get();
+
+                    if (deepSeekToolWindow != null) {
+                        deepSeekToolWindow.loadChatHistory();
+                    }
                 }
             }
         };
 
+        AnAction button3 = new AnAction("Stop Generating", "", AllIcons.Actions.Suspend) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                // 中断进行中的请求，已经输出的内容保留
+                RequestScheduler.getInstance(project).cancelAll();
+            }
+
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                e.getPresentation().setEnabled(RequestScheduler.getInstance(project).hasActiveRequests());
+            }
+
+            @Override
+            public @NotNull ActionUpdateThread getActionUpdateThread() {
+                return ActionUpdateThread.BGT;
+            }
+        };
+
+        AnAction button4 = new AnAction("Show Metrics", "", AllIcons.Actions.Profile) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                new MetricsDialog(project).show();
+            }
+        };
+
         // 将按钮添加到工具窗口标题栏
-        toolWindow.setTitleActions(List.of(button1, button2));
+        toolWindow.setTitleActions(List.of(button3, button4, button1, button2));
     }
 } 
\ No newline at end of file
@@ -0,0 +1,737 @@
+package com.sohocn.deep.seek.coder.sidebar;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.html.HTMLDocument;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+import com.sohocn.deep.seek.coder.service.HtmlCacheService;
+import com.sohocn.deep.seek.coder.util.HtmlDocumentUtil;
+
+/**
+ * 虚拟化的消息列表，只为视口内及附近的消息创建气泡组件。
+ * <p>
+ * 每条消息的高度按宽度分档缓存，未测量的消息按内容长度估算，列表总高度由高度前缀和得到。
+ * 一条消息的高度变化时只更新它之后的前缀和。
+ * 滚动时在前缀和上二分查找可见范围，只处理可见的消息和持有气泡的消息，内存占用和滚动开销都不随历史记录增长。
+ * 拖动侧边栏时沿用旧高度，停止拖动后才重新测量可见的气泡，屏幕外的气泡在进入视口时再测量。所有方法都需要在 EDT 上调用。
+ * <p>
+ * 气泡的 HTMLDocument 在有界的线程池上并行构建，构建期间保留估算的高度，一批全部完成后再在 EDT 上按顺序创建气泡。
+ * 加载的每一页历史整页作为一批并行构建，完成后在 EDT 上分片测量屏幕外的消息并写入高度缓存，滚动到这些消息时高度不再跳动。
+ * 测量需要真实的组件，只在 EDT 上进行。
+ * <p>
+ * 历史记录从最近的一页开始显示，视口接近顶部时通知 topListener 加载更早的消息并插入到列表开头。
+ */
+public class MessageListPanel extends JBPanel<MessageListPanel> implements Scrollable {
+    private static final Logger logger = Logger.getInstance(MessageListPanel.class);
+
+    private static final int MESSAGE_HORIZONTAL_MARGIN = 20; // 左右边距各20像素
+    private static final int OVERSCAN = 600; // 视口上下额外保留的像素
+    private static final int ESTIMATED_LINE_HEIGHT = 18;
+    private static final int ESTIMATED_CHARS_PER_LINE = 60;
+    private static final int ESTIMATED_PADDING = 46;
+    private static final int WIDTH_BUCKET = 16; // 高度缓存的宽度分档
+    private static final int MAX_CACHED_WIDTHS = 4;
+    private static final int RELAYOUT_DELAY = 150; // 宽度停止变化后多久重新测量（毫秒）
+    private static final int MAX_RENDER_THREADS = 4;
+    private static final long MEASURE_SLICE_NANOS = 8_000_000; // 每次在 EDT 上连续测量的时长
+
+    // 渲染消息的线程池，保留一个核给 EDT；线程来自 IDE 的应用线程池，随 IDE 关闭
+    private static final ExecutorService RENDER_EXECUTOR =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("DeepSeek Message Renderer",
+            Math.max(1, Math.min(MAX_RENDER_THREADS, Runtime.getRuntime().availableProcessors() - 1)));
+
+    public interface BubbleFactory {
+        JBPanel<JBPanel<?>> create(HTMLDocument document, boolean user);
+    }
+
+    public static class Entry {
+        private String content;
+        private final boolean user;
+
+        // 后台构建好的文档，为空时在后台从缓存渲染
+        private HTMLDocument document;
+        private boolean preparing;
+        private boolean pinned;
+
+        // 内容每次变化时递增，用于丢弃过期的后台构建结果
+        private int version;
+
+        private JBPanel<JBPanel<?>> bubble;
+
+        // 在列表中的下标，与前缀和一起更新
+        private int index;
+
+        // 宽度分档 -> 测量高度
+        private final Map<Integer, Integer> heights = new HashMap<>(MAX_CACHED_WIDTHS);
+        private int lastHeight = -1;
+
+        // 按内容估算的高度，内容变化时清除
+        private int estimatedHeight = -1;
+
+        private Entry(String content, boolean user) {
+            this.content = content;
+            this.user = user;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public boolean isUser() {
+            return user;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    // 持有气泡或文档以及被固定的消息，滚动时只需要回收其中离开视口的部分
+    private final Set<Entry> materialized = new HashSet<>();
+    private final BubbleFactory factory;
+
+    private final Timer relayoutTimer;
+    private final ChangeListener viewportListener = e -> updateVisible();
+
+    // 注册了 viewportListener 的视口
+    private JViewport listenedViewport;
+
+    // 视口接近列表顶部时调用
+    private Runnable topListener;
+
+    private int[] offsets = new int[1];
+
+    // 从该下标开始的前缀和需要重新计算，等于 Integer.MAX_VALUE 时前缀和是最新的
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private boolean historyPending;
+    private boolean updating;
+    private boolean updateScheduled;
+
+    // 当前布局使用的宽度分档，-1 表示尚未确定
+    private int bucket = -1;
+
+    public MessageListPanel(BubbleFactory factory) {
+        super(null);
+        this.factory = factory;
+
+        relayoutTimer = new Timer(RELAYOUT_DELAY, e -> relayout());
+        relayoutTimer.setRepeats(false);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+
+        if (listenedViewport == null && getParent() instanceof JViewport viewport) {
+            listenedViewport = viewport;
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (listenedViewport != null) {
+            listenedViewport.removeChangeListener(viewportListener);
+            listenedViewport = null;
+        }
+
+        super.removeNotify();
+    }
+
+    public Entry addMessage(String content, boolean user) {
+        Entry entry = new Entry(content, user);
+        entries.add(entry);
+        modelChanged(entries.size() - 1);
+
+        return entry;
+    }
+
+    public void setTopListener(Runnable topListener) {
+        this.topListener = topListener;
+    }
+
+    public void setMessages(List<ChatMessage> messages) {
+        clear();
+
+        for (ChatMessage message : messages) {
+            entries.add(new Entry(message.getContent(), message.isUser()));
+        }
+
+        historyPending = true;
+        prepareHistory();
+        modelChanged(0);
+    }
+
+    public void removeMessage(Entry entry) {
+        int index = contains(entry) ? entry.index : -1;
+
+        if (index >= 0) {
+            entries.remove(index);
+            release(entry);
+            modelChanged(index);
+        }
+    }
+
+    // 在列表开头插入更早的消息，视口停留在原来的消息上
+    public void prependMessages(List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        List<Entry> older = new ArrayList<>(messages.size());
+
+        for (ChatMessage message : messages) {
+            older.add(new Entry(message.getContent(), message.isUser()));
+        }
+
+        JViewport viewport = getParent() instanceof JViewport parent ? parent : null;
+        ensureOffsets();
+
+        int anchor = 0;
+        int anchorDelta = 0;
+        boolean atBottom = true;
+
+        if (viewport != null && !entries.isEmpty()) {
+            Rectangle view = viewport.getViewRect();
+            atBottom = view.y + view.height >= offsets[entries.size()];
+            anchor = indexAt(view.y) + older.size();
+            anchorDelta = view.y - offsets[anchor - older.size()];
+        }
+
+        entries.addAll(0, older);
+        prepare(older, null, true);
+        modelChanged(0);
+
+        if (viewport == null) {
+            return;
+        }
+
+        if (atBottom) {
+            SwingUtilities.invokeLater(this::scrollToEnd);
+        } else {
+            ensureOffsets();
+            viewport.setViewPosition(new Point(0, Math.max(0, offsets[anchor] + anchorDelta)));
+        }
+    }
+
+    public void clear() {
+        for (Entry entry : new ArrayList<>(materialized)) {
+            release(entry);
+        }
+
+        entries.clear();
+        materialized.clear();
+        historyPending = false;
+        modelChanged(0);
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    // 固定的消息（正在流式输出的回复）不会被回收
+    public void setPinned(Entry entry, boolean pinned) {
+        entry.pinned = pinned;
+
+        if (!pinned) {
+            updateVisible();
+        } else if (contains(entry)) {
+            materialized.add(entry);
+        }
+    }
+
+    // 更新消息内容，document 为在后台构建好的文档，EDT 上只替换文档
+    public void setDocument(Entry entry, String content, HTMLDocument document) {
+        entry.content = content;
+        entry.document = document;
+        entry.version++;
+        entry.heights.clear();
+        entry.estimatedHeight = -1;
+
+        if (contains(entry)) {
+            materialized.add(entry);
+            invalidateFrom(entry.index);
+        }
+
+        if (entry.bubble != null) {
+            long start = System.nanoTime();
+            textArea(entry.bubble).setDocument(document);
+            MetricsRegistry.getInstance().recordMicrosSince(MetricsRegistry.UI_DOCUMENT_SWAP, start);
+        }
+
+        updateVisible();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        ensureOffsets();
+
+        return new Dimension(getWidth(), offsets[entries.size()]);
+    }
+
+    @Override
+    public void doLayout() {
+        ensureOffsets();
+
+        for (Entry entry : materialized) {
+            if (entry.bubble != null) {
+                entry.bubble.setBounds(0, offsets[entry.index], getWidth(), heightOf(entry));
+            }
+        }
+
+        // 首次确定宽度时立即测量，之后的宽度变化等拖动停止再处理
+        int current = bucketOf(getWidth());
+
+        if (bucket < 0 && current > 0) {
+            SwingUtilities.invokeLater(this::relayout);
+        } else if (current != bucket) {
+            relayoutTimer.restart();
+        }
+    }
+
+    // 立即按当前宽度重新测量，平时在宽度停止变化后由定时器调用
+    public void relayout() {
+        relayoutTimer.stop();
+
+        int current = bucketOf(getWidth());
+
+        if (current != bucket) {
+            bucket = current;
+            invalidateFrom(0);
+            revalidate();
+            prepareHistory();
+        }
+
+        updateVisible();
+    }
+
+    // 根据视口位置创建、回收并测量气泡
+    private void updateVisible() {
+        if (updating || !(getParent() instanceof JViewport viewport) || bucket <= 0) {
+            return;
+        }
+
+        updating = true;
+        long start = System.nanoTime();
+
+        try {
+            ensureOffsets();
+
+            Rectangle view = viewport.getViewRect();
+            Anchor anchor = new Anchor(view);
+
+            int first = indexAt(view.y - OVERSCAN);
+            int last = indexAt(view.y + view.height + OVERSCAN);
+            boolean heightChanged = false;
+            List<Entry> unprepared = new ArrayList<>();
+
+            // 回收离开视口的气泡，固定的消息即使不可见也保留
+            for (Entry entry : new ArrayList<>(materialized)) {
+                if (entry.index >= first && entry.index <= last) {
+                    continue;
+                }
+
+                if (entry.pinned) {
+                    heightChanged |= show(entry, unprepared);
+                } else {
+                    release(entry);
+                }
+            }
+
+            for (int i = first; i <= last && i < entries.size(); i++) {
+                heightChanged |= show(entries.get(i), unprepared);
+            }
+
+            prepare(unprepared, null, false);
+
+            // 更早的消息由 topListener 按需加载
+            if (first == 0 && topListener != null && !entries.isEmpty()) {
+                SwingUtilities.invokeLater(topListener);
+            }
+
+            if (heightChanged) {
+                anchor.restore(viewport);
+            }
+
+            doLayout();
+            repaint();
+        } finally {
+            updating = false;
+            MetricsRegistry.getInstance().recordMicrosSince(MetricsRegistry.UI_LAYOUT, start);
+        }
+    }
+
+    // 创建气泡并按当前宽度测量，返回高度是否变化
+    private boolean show(Entry entry, List<Entry> unprepared) {
+        if (entry.bubble == null) {
+            // 文档还没有构建好时先保留估算的高度
+            if (entry.document == null) {
+                unprepared.add(entry);
+                return false;
+            }
+
+            entry.bubble = factory.create(entry.document, entry.user);
+            add(entry.bubble);
+        }
+
+        return !entry.heights.containsKey(bucket) && measure(entry, entry.bubble);
+    }
+
+    // 视口顶部的消息及其偏移，高度变化后用来恢复视口位置
+    private final class Anchor {
+        private final boolean atBottom;
+        private final int index;
+        private final int delta;
+
+        private Anchor(Rectangle view) {
+            atBottom = view.y + view.height >= offsets[entries.size()];
+            index = indexAt(view.y);
+            delta = entries.isEmpty() ? 0 : view.y - offsets[index];
+        }
+
+        // 更新前缀和，保持视口顶部的消息位置不变，位于底部时继续停留在底部
+        private void restore(JViewport viewport) {
+            ensureOffsets();
+            revalidate();
+
+            if (atBottom) {
+                SwingUtilities.invokeLater(MessageListPanel.this::scrollToEnd);
+            } else if (!entries.isEmpty()) {
+                viewport.setViewPosition(new Point(0, Math.max(0, offsets[index] + delta)));
+
+                // 视口移动后可见范围可能变化，下一轮再补齐
+                SwingUtilities.invokeLater(MessageListPanel.this::updateVisible);
+            }
+        }
+    }
+
+    // 在后台并行渲染 Markdown 并构建文档，整批完成后回到 EDT 按顺序创建气泡。measureAll 为 true 时
+    // 随后在 EDT 上分片测量整批消息，metric 为空时不记录耗时
+    private void prepare(List<Entry> batch, String metric, boolean measureAll) {
+        long start = System.nanoTime();
+        List<PrepareTask> tasks = new ArrayList<>(batch.size());
+
+        for (Entry entry : batch) {
+            if (!entry.preparing && entry.bubble == null && entry.document == null) {
+                entry.preparing = true;
+                tasks.add(new PrepareTask(entry));
+            }
+        }
+
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(tasks.get(i), RENDER_EXECUTOR);
+        }
+
+        CompletableFuture.allOf(futures).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            for (PrepareTask task : tasks) {
+                task.apply();
+            }
+
+            // 先显示视口内的气泡，屏幕外的消息随后测量
+            scheduleUpdate();
+
+            if (measureAll) {
+                SwingUtilities.invokeLater(() -> measureSlice(tasks, 0, metric, start));
+            } else if (metric != null) {
+                MetricsRegistry.getInstance().recordSince(metric, start);
+            }
+        }));
+    }
+
+    // 从 from 开始测量一批消息，超过时间片后让出 EDT，剩余的消息在下一个事件中继续
+    private void measureSlice(List<PrepareTask> tasks, int from, String metric, long start) {
+        long sliceStart = System.nanoTime();
+        Anchor anchor = getParent() instanceof JViewport viewport ? new Anchor(viewport.getViewRect()) : null;
+        boolean heightChanged = false;
+        int i = from;
+
+        while (i < tasks.size() && System.nanoTime() - sliceStart < MEASURE_SLICE_NANOS) {
+            heightChanged |= tasks.get(i++).measure();
+        }
+
+        if (heightChanged && anchor != null) {
+            anchor.restore((JViewport)getParent());
+        } else if (heightChanged) {
+            revalidate();
+        }
+
+        if (i < tasks.size()) {
+            int next = i;
+            SwingUtilities.invokeLater(() -> measureSlice(tasks, next, metric, start));
+        } else if (metric != null) {
+            MetricsRegistry.getInstance().recordSince(metric, start);
+        }
+    }
+
+    private final class PrepareTask implements Runnable {
+        private final Entry entry;
+        private final String content;
+        private final int version;
+
+        private HTMLDocument document;
+
+        private PrepareTask(Entry entry) {
+            this.entry = entry;
+            this.content = entry.content;
+            this.version = entry.version;
+        }
+
+        @Override
+        public void run() {
+            try {
+                document = HtmlDocumentUtil.build(HtmlCacheService.getInstance().render(content));
+            } catch (Exception e) {
+                logger.warn("Error rendering message: " + e.getMessage());
+                document = HtmlDocumentUtil.build("");
+            }
+        }
+
+        // 在 EDT 上调用
+        private void apply() {
+            entry.preparing = false;
+
+            // 构建期间内容已经更新或者消息已经移除的结果直接丢弃
+            if (entry.version == version && entry.bubble == null && contains(entry)) {
+                entry.document = document;
+                materialized.add(entry);
+            }
+        }
+
+        // 在 EDT 上调用，用临时气泡测量还没有气泡的消息，返回高度是否变化。已经创建气泡的消息由 show 测量
+        private boolean measure() {
+            if (bucket <= 0 || entry.version != version || entry.bubble != null || entry.heights.containsKey(bucket)
+                || !contains(entry)) {
+                return false;
+            }
+
+            JBPanel<JBPanel<?>> scratch = factory.create(document, entry.user);
+
+            try {
+                return MessageListPanel.this.measure(entry, scratch);
+            } finally {
+                // 断开临时气泡与文档的关联，文档可能随后交给真正的气泡
+                JEditorPane textArea = textArea(scratch);
+                textArea.setDocument(textArea.getEditorKit().createDefaultDocument());
+            }
+        }
+    }
+
+    // 整页历史作为一批并行构建并测量，需要先确定宽度
+    private void prepareHistory() {
+        if (historyPending && bucket > 0) {
+            historyPending = false;
+            prepare(new ArrayList<>(entries), MetricsRegistry.UI_HISTORY_LOAD, true);
+        }
+    }
+
+    // 多条消息同时构建完成时只更新一次
+    private void scheduleUpdate() {
+        if (!updateScheduled) {
+            updateScheduled = true;
+
+            SwingUtilities.invokeLater(() -> {
+                updateScheduled = false;
+                updateVisible();
+            });
+        }
+    }
+
+    private void scrollToEnd() {
+        if (getParent() instanceof JViewport viewport) {
+            int y = Math.max(0, getPreferredSize().height - viewport.getHeight());
+            viewport.setViewPosition(new Point(0, y));
+        }
+    }
+
+    // 按当前宽度分档的下限测量气泡高度，返回高度是否发生变化
+    private boolean measure(Entry entry, JBPanel<JBPanel<?>> bubble) {
+        int previous = heightOf(entry);
+        int availableWidth = bucket * WIDTH_BUCKET - (MESSAGE_HORIZONTAL_MARGIN * 2);
+
+        if (availableWidth <= 0) {
+            entry.heights.put(bucket, previous);
+            return false;
+        }
+
+        JEditorPane textArea = textArea(bubble);
+        JBPanel<?> textPanel = (JBPanel<?>)bubble.getClientProperty("textPanel");
+
+        // 设置最大宽度并计算首选高度
+        textArea.setSize(availableWidth, Short.MAX_VALUE);
+        int preferredHeight = textArea.getPreferredSize().height;
+
+        // 设置面板大小
+        textPanel.setPreferredSize(new Dimension(availableWidth, preferredHeight + 10));
+
+        int height = bubble.getPreferredSize().height;
+
+        if (entry.heights.size() >= MAX_CACHED_WIDTHS) {
+            entry.heights.clear();
+        }
+
+        entry.heights.put(bucket, height);
+        entry.lastHeight = height;
+
+        if (height == previous) {
+            return false;
+        }
+
+        // 只有这条消息之后的偏移量需要更新
+        invalidateFrom(entry.index);
+
+        return true;
+    }
+
+    private void release(Entry entry) {
+        if (entry.bubble != null) {
+            remove(entry.bubble);
+            entry.bubble = null;
+        }
+
+        // 离开视口的文档不再保留，重新进入时从 HTML 缓存构建
+        entry.document = null;
+        materialized.remove(entry);
+    }
+
+    // 下标 from 及之后的消息发生了插入、删除或替换
+    private void modelChanged(int from) {
+        invalidateFrom(from);
+        revalidate();
+        repaint();
+        SwingUtilities.invokeLater(this::updateVisible);
+    }
+
+    private void invalidateFrom(int index) {
+        dirtyFrom = Math.min(dirtyFrom, index);
+    }
+
+    // 从 dirtyFrom 开始重新计算前缀和和下标，之前的部分保持不变
+    private void ensureOffsets() {
+        int size = entries.size();
+
+        if (offsets.length != size + 1) {
+            dirtyFrom = Math.min(dirtyFrom, Math.min(offsets.length - 1, size));
+            offsets = Arrays.copyOf(offsets, size + 1);
+        }
+
+        if (dirtyFrom >= size) {
+            dirtyFrom = Integer.MAX_VALUE;
+            return;
+        }
+
+        for (int i = dirtyFrom; i < size; i++) {
+            Entry entry = entries.get(i);
+            entry.index = i;
+            offsets[i + 1] = offsets[i] + heightOf(entry);
+        }
+
+        dirtyFrom = Integer.MAX_VALUE;
+    }
+
+    private boolean contains(Entry entry) {
+        ensureOffsets();
+
+        return entry.index < entries.size() && entries.get(entry.index) == entry;
+    }
+
+    private static int bucketOf(int width) {
+        return width / WIDTH_BUCKET;
+    }
+
+    // 返回包含 y 坐标的消息下标
+    private int indexAt(int y) {
+        int low = 0;
+        int high = entries.size() - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (offsets[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return Math.max(0, low);
+    }
+
+    private int heightOf(Entry entry) {
+        Integer height = entry.heights.get(bucket);
+
+        if (height != null) {
+            return height;
+        }
+
+        // 当前宽度还没有测量时沿用最近一次的测量结果
+        if (entry.lastHeight >= 0) {
+            return entry.lastHeight;
+        }
+
+        // 未测量的消息按内容估算高度
+        if (entry.estimatedHeight < 0) {
+            String content = entry.content;
+            int lines = 1;
+
+            for (int i = 0; i < content.length(); i++) {
+                if (content.charAt(i) == '\n') {
+                    lines++;
+                }
+            }
+
+            lines += content.length() / ESTIMATED_CHARS_PER_LINE;
+            entry.estimatedHeight = lines * ESTIMATED_LINE_HEIGHT + ESTIMATED_PADDING;
+        }
+
+        return entry.estimatedHeight;
+    }
+
+    private static JEditorPane textArea(JBPanel<JBPanel<?>> bubble) {
+        return (JEditorPane)bubble.getClientProperty("textArea");
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport viewport && viewport.getHeight() > getPreferredSize().height;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sohocn.deep.seek.coder.sidebar;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+
+/**
+ * 查看请求和界面指标，可以导出为 JSON。
+ */
+public class MetricsDialog extends DialogWrapper {
+    private static final String[] COLUMNS = {"Metric", "Count", "Mean", "P50", "P90", "P99", "Max", "Last"};
+
+    private final Project project;
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    public MetricsDialog(Project project) {
+        super(project, false);
+        this.project = project;
+
+        setTitle("DeepSeek Metrics");
+        setOKButtonText("Refresh");
+        setCancelButtonText("Close");
+        init();
+        refresh();
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        JBTable table = new JBTable(model);
+        table.getColumnModel().getColumn(0).setPreferredWidth(220);
+
+        JBScrollPane scrollPane = new JBScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(720, 360));
+
+        return scrollPane;
+    }
+
+    @Override
+    protected Action @NotNull [] createLeftSideActions() {
+        return new Action[] {new DialogWrapperAction("Export JSON...") {
+            @Override
+            protected void doAction(ActionEvent e) {
+                exportJson();
+            }
+        }, new DialogWrapperAction("Reset") {
+            @Override
+            protected void doAction(ActionEvent e) {
+                MetricsRegistry.getInstance().reset();
+                refresh();
+            }
+        }};
+    }
+
+    // OK 按钮只刷新数据，不关闭对话框
+    @Override
+    protected void doOKAction() {
+        refresh();
+    }
+
+    private void refresh() {
+        model.setRowCount(0);
+
+        for (Map.Entry<String, MetricsRegistry.Stat> entry : MetricsRegistry.getInstance().getStats().entrySet()) {
+            MetricsRegistry.Stat stat = entry.getValue();
+
+            model.addRow(new Object[] {entry.getKey(), stat.getCount(), String.format("%.1f", stat.getMean()),
+                stat.getPercentile(0.5), stat.getPercentile(0.9), stat.getPercentile(0.99), stat.getMax(),
+                stat.getLast()});
+        }
+    }
+
+    private void exportJson() {
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Metrics", "Save metrics as JSON", "json");
+        VirtualFileWrapper wrapper =
+            FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project).save("deepseek-metrics.json");
+
+        if (wrapper == null) {
+            return;
+        }
+
+        try {
+            String json = MetricsRegistry.getInstance().toJson();
+            Files.writeString(wrapper.getFile().toPath(), json, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Messages.showErrorDialog(project, "Error exporting metrics: " + e.getMessage(), "Export Metrics");
+        }
+    }
+}
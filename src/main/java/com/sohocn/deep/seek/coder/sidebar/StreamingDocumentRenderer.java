@@ -0,0 +1,102 @@
+package com.sohocn.deep.seek.coder.sidebar;
+
+import java.util.concurrent.ExecutorService;
+
+import javax.swing.*;
+import javax.swing.text.html.HTMLDocument;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sohocn.deep.seek.coder.metrics.MetricsRegistry;
+import com.sohocn.deep.seek.coder.util.HtmlDocumentUtil;
+import com.sohocn.deep.seek.coder.util.IncrementalMarkdownRenderer;
+
+/**
+ * 在后台线程渲染流式回答，Markdown 转 HTML 和构建 HTMLDocument 都不占用 EDT。
+ * <p>
+ * 渲染任务按顺序执行，上一次渲染还没结束时新到的内容合并到下一次渲染。append 可以在任意线程调用，
+ * Listener 总是在 EDT 上收到渲染结果，只需要替换文档。
+ */
+public class StreamingDocumentRenderer {
+    public interface Listener {
+        void rendered(String text, HTMLDocument document);
+    }
+
+    private final IncrementalMarkdownRenderer renderer = new IncrementalMarkdownRenderer();
+    private final ExecutorService executor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("DeepSeek Stream Renderer", 1);
+    private final StringBuilder pending = new StringBuilder();
+    private final Listener listener;
+
+    // 是否已经有排队中的渲染任务，由 pending 保护
+    private boolean scheduled;
+    private volatile boolean cancelled;
+
+    public StreamingDocumentRenderer(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void append(String delta) {
+        synchronized (pending) {
+            pending.append(delta);
+
+            if (scheduled) {
+                return;
+            }
+
+            scheduled = true;
+        }
+
+        executor.execute(this::render);
+    }
+
+    // 已提交的内容全部替换到界面后，在 EDT 上执行 afterRendered
+    public void complete(Runnable afterRendered) {
+        executor.execute(() -> SwingUtilities.invokeLater(afterRendered));
+    }
+
+    // 丢弃尚未替换到界面的渲染结果
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // 以下两个方法在 complete 的回调中调用，此时渲染已经结束
+    public String getText() {
+        return renderer.getText();
+    }
+
+    public String getHtml() {
+        return renderer.getHtml();
+    }
+
+    private void render() {
+        String delta;
+
+        synchronized (pending) {
+            delta = pending.toString();
+            pending.setLength(0);
+            scheduled = false;
+        }
+
+        if (cancelled || delta.isEmpty()) {
+            return;
+        }
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+        long start = System.nanoTime();
+        String html = renderer.append(delta);
+        metrics.recordMicrosSince(MetricsRegistry.UI_RENDER, start);
+
+        start = System.nanoTime();
+        HTMLDocument document = HtmlDocumentUtil.build(html);
+        metrics.recordMicrosSince(MetricsRegistry.UI_DOCUMENT_BUILD, start);
+
+        String text = renderer.getText();
+
+        SwingUtilities.invokeLater(() -> {
+            if (!cancelled) {
+                listener.rendered(text, document);
+            }
+        });
+    }
+}
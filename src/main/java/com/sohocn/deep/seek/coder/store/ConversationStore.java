@@ -0,0 +1,335 @@
+package com.sohocn.deep.seek.coder.store;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.sohocn.deep.seek.coder.constant.AppConstant;
+import com.sohocn.deep.seek.coder.sidebar.ChatMessage;
+
+/**
+ * 项目级的聊天记录存储，保存在 IDE system 目录下的追加写日志中。
+ * <p>
+ * 日志文件中每条记录为 [长度][角色][UTF-8 内容]，索引文件按顺序保存每条记录的起始偏移量（8 字节），
+ * 因此追加一条消息是 O(1)，读取最近的 N 条消息只需要读取日志尾部。
+ * <p>
+ * 压缩时先写临时文件，再依次替换日志和索引，中途退出时下次打开会丢弃或补完这次压缩，不会丢失记录。
+ */
+public final class ConversationStore implements Disposable {
+    private static final Logger logger = Logger.getInstance(ConversationStore.class);
+
+    private static final int HEADER_SIZE = 5;
+    private static final int INDEX_ENTRY_SIZE = 8;
+    private static final byte ROLE_USER = 0;
+    private static final byte ROLE_ASSISTANT = 1;
+    private static final int MAX_RECORDS = 1000; // 超过后打开时压缩日志
+
+    private final Path directory;
+    private final Path logFile;
+    private final Path indexFile;
+
+    // 只有项目的聊天记录需要导入旧版本的记录
+    private final boolean importLegacy;
+
+    private FileChannel log;
+    private FileChannel index;
+    private int size;
+
+    public ConversationStore(Project project) {
+        this(Path.of(PathManager.getSystemPath(), "deepseek-coder", "conversations", project.getLocationHash()), true);
+    }
+
+    // 保存在指定目录下，不导入旧版本的记录，用于基准测试
+    public ConversationStore(Path directory) {
+        this(directory, false);
+    }
+
+    private ConversationStore(Path directory, boolean importLegacy) {
+        this.directory = directory;
+        this.importLegacy = importLegacy;
+        logFile = directory.resolve("history.log");
+        indexFile = directory.resolve("history.idx");
+    }
+
+    public static ConversationStore getInstance(Project project) {
+        return project.getService(ConversationStore.class);
+    }
+
+    public synchronized int size() throws IOException {
+        open();
+        return size;
+    }
+
+    public synchronized void append(ChatMessage message) throws IOException {
+        open();
+
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        long offset = log.size();
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + content.length);
+        record.putInt(content.length);
+        record.put(message.isUser() ? ROLE_USER : ROLE_ASSISTANT);
+        record.put(content);
+        record.flip();
+        writeFully(log, record, offset);
+
+        // 先写日志再写索引，索引中的记录总是完整的
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(offset);
+        entry.flip();
+        writeFully(index, entry, (long)size * INDEX_ENTRY_SIZE);
+
+        size++;
+    }
+
+    // 读取最近的 count 条消息
+    public synchronized List<ChatMessage> readTail(int count) throws IOException {
+        open();
+        return read(Math.max(0, size - count), size);
+    }
+
+    // 读取下标在 [from, to) 之间的消息
+    public synchronized List<ChatMessage> read(int from, int to) throws IOException {
+        open();
+
+        from = Math.max(0, from);
+        to = Math.min(size, to);
+
+        List<ChatMessage> messages = new ArrayList<>(Math.max(0, to - from));
+
+        if (from >= to) {
+            return messages;
+        }
+
+        long start = offsetAt(from);
+        long end = to < size ? offsetAt(to) : log.size();
+
+        // 一次读取整个区间，再逐条解码
+        ByteBuffer buffer = ByteBuffer.allocate((int)(end - start));
+        readFully(log, buffer, start);
+        buffer.flip();
+
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            byte role = buffer.get();
+            String content = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+
+            messages.add(new ChatMessage(content, role == ROLE_USER));
+        }
+
+        return messages;
+    }
+
+    public synchronized void clear() throws IOException {
+        open();
+
+        log.truncate(0);
+        index.truncate(0);
+        size = 0;
+    }
+
+    // 只保留最近的 keep 条消息，重写日志和索引
+    public synchronized void compact(int keep) throws IOException {
+        open();
+
+        if (size <= keep) {
+            return;
+        }
+
+        int from = size - keep;
+        long start = offsetAt(from);
+        long end = log.size();
+
+        // 先完整写出日志，再写索引，替换日志之前临时日志总是存在
+        try (FileChannel target = FileChannel.open(temp(logFile), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (long position = start; position < end;) {
+                position += log.transferTo(position, end - position, target);
+            }
+
+            target.force(true);
+        }
+
+        ByteBuffer entries = ByteBuffer.allocate(keep * INDEX_ENTRY_SIZE);
+        readFully(index, entries, (long)from * INDEX_ENTRY_SIZE);
+
+        for (int i = 0; i < keep; i++) {
+            entries.putLong(i * INDEX_ENTRY_SIZE, entries.getLong(i * INDEX_ENTRY_SIZE) - start);
+        }
+
+        entries.flip();
+
+        try (FileChannel target = FileChannel.open(temp(indexFile), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(target, entries, 0);
+            target.force(true);
+        }
+
+        close();
+
+        try {
+            Files.move(temp(logFile), logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp(indexFile), indexFile, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // 替换失败时由 open 恢复到一致的状态
+            open();
+        }
+    }
+
+    private void open() throws IOException {
+        if (log != null) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+
+        // 上次压缩中断：日志还没有替换时丢弃临时文件，日志已经替换时补上索引
+        if (Files.exists(temp(logFile))) {
+            Files.delete(temp(logFile));
+            Files.deleteIfExists(temp(indexFile));
+        } else if (Files.exists(temp(indexFile))) {
+            Files.move(temp(indexFile), indexFile, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        boolean created = !Files.exists(logFile);
+
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index =
+            FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        recover();
+
+        if (created && importLegacy) {
+            importLegacyHistory();
+        }
+
+        if (size > MAX_RECORDS) {
+            compact(MAX_RECORDS / 2);
+        }
+    }
+
+    // 丢弃写入中断留下的不完整记录
+    private void recover() throws IOException {
+        size = (int)(index.size() / INDEX_ENTRY_SIZE);
+
+        while (size > 0) {
+            long offset = offsetAt(size - 1);
+
+            if (offset + HEADER_SIZE <= log.size()) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(log, header, offset);
+                long end = offset + HEADER_SIZE + header.getInt(0);
+
+                if (end <= log.size()) {
+                    log.truncate(end);
+                    break;
+                }
+            }
+
+            size--;
+        }
+
+        if (size == 0) {
+            log.truncate(0);
+        }
+
+        index.truncate((long)size * INDEX_ENTRY_SIZE);
+    }
+
+    // 从旧版本保存在 PropertiesComponent 中的 JSON 导入聊天记录。旧记录是应用级的，只导入到第一个打开的项目，
+    // 导入后删除，避免每个项目都得到一份副本
+    private void importLegacyHistory() {
+        PropertiesComponent properties = PropertiesComponent.getInstance();
+
+        synchronized (ConversationStore.class) {
+            String json = properties.getValue(AppConstant.CHAT_HISTORY);
+
+            if (json == null || json.isEmpty()) {
+                return;
+            }
+
+            try {
+                Type listType = new TypeToken<List<ChatMessage>>() {}.getType();
+                List<ChatMessage> messages = new Gson().fromJson(json, listType);
+
+                if (messages != null) {
+                    for (ChatMessage message : messages) {
+                        append(message);
+                    }
+                }
+
+                properties.unsetValue(AppConstant.CHAT_HISTORY);
+            } catch (Exception e) {
+                logger.warn("Error importing chat history: " + e.getMessage());
+            }
+        }
+    }
+
+    private void close() throws IOException {
+        try {
+            if (log != null) {
+                log.close();
+                index.close();
+            }
+        } finally {
+            log = null;
+            index = null;
+        }
+    }
+
+    private static Path temp(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private long offsetAt(int position) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        readFully(index, entry, (long)position * INDEX_ENTRY_SIZE);
+
+        return entry.getLong(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+
+            if (read < 0) {
+                throw new IOException("Unexpected end of conversation log");
+            }
+
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        try {
+            close();
+        } catch (IOException e) {
+            logger.warn("Error closing conversation log: " + e.getMessage());
+        }
+    }
+}
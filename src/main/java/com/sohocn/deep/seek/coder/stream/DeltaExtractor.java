@@ -0,0 +1,372 @@
+package com.sohocn.deep.seek.coder.stream;
+
+/**
+ * 从流式响应的 JSON 分片中只提取热路径需要的字段：choices[0].delta.content 和 reasoning_content。
+ * <p>
+ * 直接扫描 UTF-8 字节，不构建对象树。遇到非空的 usage 或 finish_reason，或者含有转义、无法按字节比较的键时，
+ * 通过 {@link #needsFullBinding()} 通知调用方回退到完整的 MessageBO 绑定。实例可复用，非线程安全。
+ */
+public class DeltaExtractor {
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder reasoningContent = new StringBuilder();
+
+    private boolean hasContent;
+    private boolean hasReasoningContent;
+    private boolean needsFullBinding;
+
+    private byte[] bytes;
+    private int position;
+    private int end;
+
+    // 解析一个分片，格式无法识别时返回 false，调用方应回退到完整绑定
+    public boolean extract(byte[] data, int offset, int length) {
+        content.setLength(0);
+        reasoningContent.setLength(0);
+        hasContent = false;
+        hasReasoningContent = false;
+        needsFullBinding = false;
+
+        bytes = data;
+        position = offset;
+        end = offset + length;
+
+        try {
+            parseMessage();
+            return true;
+        } catch (IllegalStateException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        } finally {
+            bytes = null;
+        }
+    }
+
+    public String getContent() {
+        return hasContent ? content.toString() : null;
+    }
+
+    public String getReasoningContent() {
+        return hasReasoningContent ? reasoningContent.toString() : null;
+    }
+
+    // 分片中包含 usage 或 finish_reason 等低频字段，或者有无法识别的键
+    public boolean needsFullBinding() {
+        return needsFullBinding;
+    }
+
+    private void parseMessage() {
+        expect('{');
+
+        if (consumeIf('}')) {
+            return;
+        }
+
+        do {
+            skipWhitespace();
+            int keyStart = position + 1;
+            int keyEnd = skipKey();
+            expect(':');
+
+            if (keyEquals(keyStart, keyEnd, "choices")) {
+                parseChoices();
+            } else if (keyEquals(keyStart, keyEnd, "usage")) {
+                markIfNotNull();
+            } else {
+                skipValue();
+            }
+        } while (consumeIf(','));
+
+        expect('}');
+    }
+
+    private void parseChoices() {
+        if (consumeNull()) {
+            return;
+        }
+
+        expect('[');
+
+        if (consumeIf(']')) {
+            return;
+        }
+
+        // 只关心第一个 choice
+        parseChoice();
+
+        while (consumeIf(',')) {
+            skipValue();
+        }
+
+        expect(']');
+    }
+
+    private void parseChoice() {
+        expect('{');
+
+        if (consumeIf('}')) {
+            return;
+        }
+
+        do {
+            skipWhitespace();
+            int keyStart = position + 1;
+            int keyEnd = skipKey();
+            expect(':');
+
+            if (keyEquals(keyStart, keyEnd, "delta")) {
+                parseDelta();
+            } else if (keyEquals(keyStart, keyEnd, "finish_reason")) {
+                markIfNotNull();
+            } else {
+                skipValue();
+            }
+        } while (consumeIf(','));
+
+        expect('}');
+    }
+
+    private void parseDelta() {
+        if (consumeNull()) {
+            return;
+        }
+
+        expect('{');
+
+        if (consumeIf('}')) {
+            return;
+        }
+
+        do {
+            skipWhitespace();
+            int keyStart = position + 1;
+            int keyEnd = skipKey();
+            expect(':');
+
+            if (keyEquals(keyStart, keyEnd, "content")) {
+                hasContent = readString(content);
+            } else if (keyEquals(keyStart, keyEnd, "reasoning_content")) {
+                hasReasoningContent = readString(reasoningContent);
+            } else {
+                skipValue();
+            }
+        } while (consumeIf(','));
+
+        expect('}');
+    }
+
+    private void markIfNotNull() {
+        if (!consumeNull()) {
+            needsFullBinding = true;
+            skipValue();
+        }
+    }
+
+    // 读取字符串值到 target，值为 null 时返回 false
+    private boolean readString(StringBuilder target) {
+        if (consumeNull()) {
+            return false;
+        }
+
+        expect('"');
+
+        while (position < end) {
+            int b = bytes[position++] & 0xFF;
+
+            if (b == '"') {
+                return true;
+            }
+
+            if (b == '\\') {
+                readEscape(target);
+            } else if (b < 0x80) {
+                target.append((char)b);
+            } else if (b < 0xE0) {
+                target.append((char)(((b & 0x1F) << 6) | continuation()));
+            } else if (b < 0xF0) {
+                target.append((char)(((b & 0x0F) << 12) | (continuation() << 6) | continuation()));
+            } else {
+                int codePoint = ((b & 0x07) << 18) | (continuation() << 12) | (continuation() << 6) | continuation();
+                target.appendCodePoint(codePoint);
+            }
+        }
+
+        throw new IllegalStateException("Unterminated string");
+    }
+
+    private int continuation() {
+        return bytes[position++] & 0x3F;
+    }
+
+    private void readEscape(StringBuilder target) {
+        byte b = bytes[position++];
+
+        switch (b) {
+            case '"', '\\', '/' -> target.append((char)b);
+            case 'b' -> target.append('\b');
+            case 'f' -> target.append('\f');
+            case 'n' -> target.append('\n');
+            case 'r' -> target.append('\r');
+            case 't' -> target.append('\t');
+            case 'u' -> {
+                int value = 0;
+
+                for (int i = 0; i < 4; i++) {
+                    value = (value << 4) | hexValue(bytes[position++]);
+                }
+
+                // 代理对由两个连续的转义组成，逐个 char 追加即可
+                target.append((char)value);
+            }
+            default -> throw new IllegalStateException("Invalid escape");
+        }
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+
+        throw new IllegalStateException("Invalid hex digit");
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        byte b = bytes[position];
+
+        if (b == '"') {
+            skipString();
+        } else if (b == '{' || b == '[') {
+            skipContainer();
+        } else {
+            // 数字、true、false、null
+            while (position < end) {
+                b = bytes[position];
+
+                if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                    break;
+                }
+
+                position++;
+            }
+        }
+    }
+
+    private void skipContainer() {
+        int depth = 0;
+
+        do {
+            if (position >= end) {
+                throw new IllegalStateException("Unterminated container");
+            }
+
+            byte b = bytes[position];
+
+            if (b == '"') {
+                skipString();
+                continue;
+            }
+
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+
+            position++;
+        } while (depth > 0);
+    }
+
+    // 跳过字符串，返回结束引号所在位置
+    private int skipString() {
+        expect('"');
+
+        while (position < end) {
+            byte b = bytes[position];
+
+            if (b == '\\') {
+                position += 2;
+            } else if (b == '"') {
+                return position++;
+            } else {
+                position++;
+            }
+        }
+
+        throw new IllegalStateException("Unterminated string");
+    }
+
+    // 跳过对象的键，返回结束引号所在位置；含有转义的键无法按字节比较，回退到完整绑定
+    private int skipKey() {
+        int keyStart = position + 1;
+        int keyEnd = skipString();
+
+        for (int i = keyStart; i < keyEnd; i++) {
+            if (bytes[i] == '\\') {
+                needsFullBinding = true;
+                break;
+            }
+        }
+
+        return keyEnd;
+    }
+
+    private boolean keyEquals(int start, int stop, String key) {
+        if (stop - start != key.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < key.length(); i++) {
+            if (bytes[start + i] != (byte)key.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean consumeNull() {
+        skipWhitespace();
+
+        if (position + 4 <= end && bytes[position] == 'n' && bytes[position + 1] == 'u' && bytes[position + 2] == 'l'
+            && bytes[position + 3] == 'l') {
+            position += 4;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean consumeIf(char c) {
+        skipWhitespace();
+
+        if (position < end && bytes[position] == c) {
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consumeIf(c)) {
+            throw new IllegalStateException("Expected '" + c + "' at " + position);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < end && isWhitespace(bytes[position])) {
+            position++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
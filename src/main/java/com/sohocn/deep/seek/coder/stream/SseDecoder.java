@@ -0,0 +1,222 @@
+package com.sohocn.deep.seek.coder.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 增量 SSE 解码器，直接在字节上按行解析，不为每一行创建 String。
+ * <p>
+ * 支持 data（含多行）、event、id、retry 字段和注释行，行尾可以是 CRLF、LF 或 CR。
+ * 按规范，流结束时尚未派发的事件会被丢弃。
+ */
+public class SseDecoder {
+    public interface Listener {
+        // 返回 false 时停止解码
+        boolean onEvent(SseEvent event);
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] BOM = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+
+    private final Listener listener;
+    private final SseEvent event = new SseEvent();
+
+    // 跨越两次读取的半行内容
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+
+    private boolean hasData;
+    private boolean skipLineFeed;
+    private boolean started;
+    private int bomMatched;
+    private boolean stopped;
+    private long bytesRead;
+
+    public SseDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    // 读取整个输入流，直到结束或监听器要求停止
+    public void decode(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while (!stopped && (read = inputStream.read(buffer)) != -1) {
+            feed(buffer, 0, read);
+        }
+    }
+
+    // 增量输入一段字节，返回是否继续解码
+    public boolean feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int position = offset;
+        bytesRead += length;
+
+        // 跳过流开头的 UTF-8 BOM，BOM 可能被拆分到多次输入中
+        while (!started && position < end) {
+            if (bytes[position] == BOM[bomMatched]) {
+                position++;
+                started = ++bomMatched == BOM.length;
+            } else {
+                // 不是 BOM，已经匹配的字节属于第一行
+                started = true;
+                appendPending(BOM, 0, bomMatched);
+            }
+        }
+
+        int lineStart = position;
+
+        while (position < end && !stopped) {
+            byte b = bytes[position];
+
+            if (skipLineFeed) {
+                skipLineFeed = false;
+
+                if (b == '\n') {
+                    lineStart = ++position;
+                    continue;
+                }
+            }
+
+            if (b == '\n' || b == '\r') {
+                if (pendingLength > 0) {
+                    appendPending(bytes, lineStart, position - lineStart);
+                    processLine(pending, 0, pendingLength);
+                    pendingLength = 0;
+                } else {
+                    processLine(bytes, lineStart, position - lineStart);
+                }
+
+                skipLineFeed = b == '\r';
+                lineStart = ++position;
+            } else {
+                position++;
+            }
+        }
+
+        if (!stopped && lineStart < end) {
+            appendPending(bytes, lineStart, end - lineStart);
+        }
+
+        return !stopped;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    // 已经输入的字节数，包括 BOM 和注释行
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void processLine(byte[] bytes, int offset, int length) {
+        // 空行：派发事件
+        if (length == 0) {
+            dispatch();
+            return;
+        }
+
+        // 冒号开头为注释（例如 keep-alive）
+        if (bytes[offset] == ':') {
+            return;
+        }
+
+        int end = offset + length;
+        int colon = offset;
+
+        while (colon < end && bytes[colon] != ':') {
+            colon++;
+        }
+
+        int fieldLength = colon - offset;
+        int valueStart = colon < end ? colon + 1 : end;
+
+        if (valueStart < end && bytes[valueStart] == ' ') {
+            valueStart++;
+        }
+
+        int valueLength = end - valueStart;
+
+        if (fieldEquals(bytes, offset, fieldLength, "data")) {
+            if (hasData) {
+                event.appendData((byte)'\n');
+            }
+
+            event.appendData(bytes, valueStart, valueLength);
+            hasData = true;
+        } else if (fieldEquals(bytes, offset, fieldLength, "event")) {
+            event.setType(new String(bytes, valueStart, valueLength, StandardCharsets.UTF_8));
+        } else if (fieldEquals(bytes, offset, fieldLength, "id")) {
+            // 包含 NUL 的 id 按规范忽略
+            for (int i = valueStart; i < end; i++) {
+                if (bytes[i] == 0) {
+                    return;
+                }
+            }
+
+            event.setLastEventId(new String(bytes, valueStart, valueLength, StandardCharsets.UTF_8));
+        } else if (fieldEquals(bytes, offset, fieldLength, "retry")) {
+            long retry = parseDigits(bytes, valueStart, end);
+
+            if (retry >= 0) {
+                event.setRetry(retry);
+            }
+        }
+    }
+
+    private void dispatch() {
+        if (hasData && !listener.onEvent(event)) {
+            stopped = true;
+        }
+
+        hasData = false;
+        event.reset();
+    }
+
+    private void appendPending(byte[] bytes, int offset, int length) {
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + length, pending.length * 2));
+        }
+
+        System.arraycopy(bytes, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    private static boolean fieldEquals(byte[] bytes, int offset, int length, String name) {
+        if (length != name.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != (byte)name.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // 只接受纯数字，否则返回 -1
+    private static long parseDigits(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+
+        long value = 0;
+
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+
+            value = value * 10 + (b - '0');
+        }
+
+        return value;
+    }
+}
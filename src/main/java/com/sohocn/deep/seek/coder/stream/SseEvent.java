@@ -0,0 +1,99 @@
+package com.sohocn.deep.seek.coder.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 一条 SSE 事件。实例由 {@link SseDecoder} 复用，只在 {@link SseDecoder.Listener#onEvent} 回调期间有效。
+ */
+public class SseEvent {
+    private static final String DEFAULT_TYPE = "message";
+
+    private String type;
+    private String lastEventId = "";
+    private long retry = -1;
+    private byte[] data = new byte[1024];
+    private int dataLength;
+
+    public String getType() {
+        return type == null ? DEFAULT_TYPE : type;
+    }
+
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    // 服务端通过 retry 字段建议的重连间隔（毫秒），未设置时为 -1
+    public long getRetry() {
+        return retry;
+    }
+
+    // 原始 UTF-8 数据，有效长度见 getDataLength()
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getDataLength() {
+        return dataLength;
+    }
+
+    public String getDataAsString() {
+        return new String(data, 0, dataLength, StandardCharsets.UTF_8);
+    }
+
+    public Reader getDataReader() {
+        return new InputStreamReader(new ByteArrayInputStream(data, 0, dataLength), StandardCharsets.UTF_8);
+    }
+
+    // 与 ASCII 字符串比较，不分配内存
+    public boolean dataEquals(String ascii) {
+        if (ascii.length() != dataLength) {
+            return false;
+        }
+
+        for (int i = 0; i < dataLength; i++) {
+            if (data[i] != (byte)ascii.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void setType(String type) {
+        this.type = type;
+    }
+
+    void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    void setRetry(long retry) {
+        this.retry = retry;
+    }
+
+    void appendData(byte[] bytes, int offset, int length) {
+        ensureCapacity(dataLength + length);
+        System.arraycopy(bytes, offset, data, dataLength, length);
+        dataLength += length;
+    }
+
+    void appendData(byte b) {
+        ensureCapacity(dataLength + 1);
+        data[dataLength++] = b;
+    }
+
+    void reset() {
+        type = null;
+        dataLength = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+}
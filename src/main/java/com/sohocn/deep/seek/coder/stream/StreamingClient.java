@@ -0,0 +1,128 @@
+package com.sohocn.deep.seek.coder.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.google.gson.Gson;
+import com.sohocn.deep.seek.coder.bo.MessageBO;
+
+/**
+ * 发送一次流式请求并解码响应，不依赖 IntelliJ 平台，插件和本地压测工具共用。
+ * <p>
+ * 热路径只用 {@link DeltaExtractor} 提取 delta 内容，包含 usage、finish_reason 的分片才完整绑定 MessageBO。
+ * 实例可以在多个线程间共用。
+ */
+public class StreamingClient {
+    public interface Listener {
+        // 收到响应头，context 中带有 TimingRequestExecutor 记录的时间
+        default void onResponse(HttpContext context) {
+        }
+
+        // 推理过程或回答的一段内容
+        void onChunk(String content);
+
+        // 分片中带有 token 用量，通常是最后一个分片
+        default void onUsage(MessageBO.Usage usage) {
+        }
+
+        // 收到 [DONE]，回答完整
+        default void onDone() {
+        }
+
+        // 单个分片解析失败，继续处理后面的分片
+        default void onChunkError(Exception e) {
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final CloseableHttpClient client;
+
+    public StreamingClient(CloseableHttpClient client) {
+        this.client = client;
+    }
+
+    // 执行请求直到流结束、收到 [DONE] 或 cancelled 返回 true，返回读取的响应体字节数
+    public long execute(HttpPost httpPost, BooleanSupplier cancelled, Listener listener) throws IOException {
+        HttpClientContext context = HttpClientContext.create();
+
+        try (CloseableHttpResponse response = client.execute(httpPost, context)) {
+            listener.onResponse(context);
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != 200) {
+                // 处理非 200 响应，读完响应体以便连接归还连接池
+                EntityUtils.consumeQuietly(response.getEntity());
+                throw new IOException("API request failed with status code: " + statusCode);
+            }
+
+            HttpEntity entity = response.getEntity();
+
+            if (entity == null) {
+                throw new IOException("Empty response from API");
+            }
+
+            // 直接在字节流上解析 SSE，不再逐行创建 String
+            DeltaExtractor extractor = new DeltaExtractor();
+            SseDecoder decoder = new SseDecoder(event -> {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+
+                if (event.dataEquals("[DONE]")) {
+                    listener.onDone();
+                    return false;
+                }
+
+                try {
+                    if (extractor.extract(event.getData(), 0, event.getDataLength())
+                        && !extractor.needsFullBinding()) {
+                        String content = extractor.getReasoningContent();
+                        emit(content != null ? content : extractor.getContent(), listener);
+                    } else {
+                        handleMessage(gson.fromJson(event.getDataReader(), MessageBO.class), listener);
+                    }
+                } catch (Exception e) {
+                    listener.onChunkError(e);
+                }
+
+                return true;
+            });
+
+            try (InputStream inputStream = entity.getContent()) {
+                decoder.decode(inputStream);
+            }
+
+            return decoder.getBytesRead();
+        }
+    }
+
+    private static void handleMessage(MessageBO messageBO, Listener listener) {
+        List<MessageBO.Choices> choices = messageBO.getChoices();
+        MessageBO.Delta delta = choices == null || choices.isEmpty() ? null : choices.get(0).getDelta();
+
+        if (delta != null) {
+            String content = delta.getReasoningContent();
+            emit(content != null ? content : delta.getContent(), listener);
+        }
+
+        if (messageBO.getUsage() != null) {
+            listener.onUsage(messageBO.getUsage());
+        }
+    }
+
+    private static void emit(String content, Listener listener) {
+        if (content != null) {
+            listener.onChunk(content);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.sohocn.deep.seek.coder.util;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.intellij.lang.Language;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.fileTypes.SyntaxHighlighter;
+import com.intellij.openapi.fileTypes.SyntaxHighlighterFactory;
+import com.intellij.psi.tree.IElementType;
+
+/**
+ * 用 IDE 的词法分析器和当前配色方案把代码块转换为带颜色的 HTML，可以在任意线程调用。
+ * <p>
+ * 已经结束的代码块按语言、代码哈希和配色方案缓存。流式输出中还在增长的代码块把上一次的分析结果保存在
+ * 这次输出的 {@link Growing} 中，新内容只从上一次最后一行之前、词法分析器处于初始状态的位置继续分析，
+ * 不会每个分片都重新分析整个代码块。
+ * 不在 IDE 中运行（例如基准测试）或找不到对应语言时只做 HTML 转义。
+ */
+public class CodeHighlighter {
+    private static final Logger logger = Logger.getInstance(CodeHighlighter.class);
+
+    private static final long MAX_CACHED_CHARS = 2L * 1024 * 1024;
+
+    // 代码块常用的语言名 -> IDE 中的语言 ID 或扩展名
+    private static final Map<String, String> ALIASES =
+        Map.of("bash", "sh", "shell", "sh", "zsh", "sh", "console", "sh", "golang", "go", "c++", "cpp");
+
+    // 语言名 -> 语言，找不到时为 Language.ANY
+    private static final Map<String, Language> LANGUAGES = new ConcurrentHashMap<>();
+
+    // 语言、配色方案、代码哈希 -> HTML
+    private static final Map<String, String> CACHE = new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedChars;
+
+    /**
+     * 一次流式输出中还在增长的代码块的分析结果，由输出这段内容的 IncrementalMarkdownRenderer 持有。
+     * 同一时刻只有最后一个块可能还在增长，因此只保存一个代码块。非线程安全。
+     */
+    public static final class Growing {
+        // 语言和配色方案，变化时不能复用
+        private String key;
+        private Lexed lexed;
+
+        public void clear() {
+            key = null;
+            lexed = null;
+        }
+    }
+
+    // 一个代码块的分析结果
+    private static final class Lexed {
+        private final String code;
+        private final StringBuilder html;
+
+        // 词法分析器处于初始状态的 token 起点：{代码偏移量, 此前 HTML 的长度}
+        private final List<int[]> restarts;
+
+        private Lexed(String code, StringBuilder html, List<int[]> restarts) {
+            this.code = code;
+            this.html = html;
+            this.restarts = restarts;
+        }
+    }
+
+    // 当前配色方案的名称，用于区分缓存
+    public static String getSchemeName() {
+        return ApplicationManager.getApplication() == null ? ""
+            : EditorColorsManager.getInstance().getGlobalScheme().getName();
+    }
+
+    // complete 为 false 表示代码块还在增长，growing 不为空时保存分析结果供下一次继续，为空时每次都完整分析
+    public static String highlight(String languageName, String code, boolean complete, Growing growing) {
+        SyntaxHighlighter highlighter = code.isEmpty() ? null : highlighter(languageName);
+
+        if (highlighter != null) {
+            try {
+                return highlight(highlighter, languageName, code, complete, growing);
+            } catch (Exception e) {
+                // 高亮失败时退回到纯文本
+                logger.warn("Error highlighting code block: " + e.getMessage());
+            }
+        }
+
+        return escape(new StringBuilder(code.length()), code).toString();
+    }
+
+    private static String highlight(SyntaxHighlighter highlighter, String languageName, String code,
+        boolean complete, Growing growing) {
+        Language language = LANGUAGES.get(languageName);
+        EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
+        String growingKey = language.getID() + ":" + scheme.getName();
+        String key = complete ? growingKey + ":" + HashUtil.sha256(code) : null;
+
+        if (key != null) {
+            synchronized (CACHE) {
+                String html = CACHE.get(key);
+
+                if (html != null) {
+                    return html;
+                }
+            }
+        }
+
+        Lexed previous = null;
+
+        if (growing != null) {
+            if (growingKey.equals(growing.key)) {
+                previous = growing.lexed;
+            }
+
+            // 分析会修改上一次的结果，先清除，失败时下一次完整分析
+            growing.clear();
+        }
+
+        Lexed lexed = lex(highlighter, scheme, code, previous);
+        String html = lexed.html.toString();
+
+        if (key != null) {
+            put(key, html);
+        } else if (growing != null) {
+            growing.key = growingKey;
+            growing.lexed = lexed;
+        }
+
+        return html;
+    }
+
+    private static Lexed lex(SyntaxHighlighter highlighter, EditorColorsScheme scheme, String code, Lexed previous) {
+        StringBuilder html;
+        List<int[]> restarts;
+        int from = 0;
+
+        if (previous != null && code.startsWith(previous.code)) {
+            // 上一次最后一行之后的内容可能改变 token 的边界，从该行之前最近的初始状态位置继续
+            int stable = previous.code.lastIndexOf('\n') + 1;
+            html = previous.html;
+            restarts = previous.restarts;
+
+            while (!restarts.isEmpty() && restarts.get(restarts.size() - 1)[0] > stable) {
+                restarts.remove(restarts.size() - 1);
+            }
+
+            int[] restart = restarts.isEmpty() ? new int[] {0, 0} : restarts.remove(restarts.size() - 1);
+            from = restart[0];
+            html.setLength(restart[1]);
+        } else {
+            html = new StringBuilder(code.length() * 2);
+            restarts = new ArrayList<>();
+        }
+
+        Lexer lexer = highlighter.getHighlightingLexer();
+        lexer.start(code, from, code.length(), 0);
+
+        Map<IElementType, String> styles = new HashMap<>();
+        IElementType type;
+
+        while ((type = lexer.getTokenType()) != null) {
+            int start = lexer.getTokenStart();
+
+            if (lexer.getState() == 0) {
+                restarts.add(new int[] {start, html.length()});
+            }
+
+            String style = styles.computeIfAbsent(type, t -> style(highlighter.getTokenHighlights(t), scheme));
+
+            if (style.isEmpty()) {
+                escape(html, code.subSequence(start, lexer.getTokenEnd()));
+            } else {
+                html.append("<span style=\"").append(style).append("\">");
+                escape(html, code.subSequence(start, lexer.getTokenEnd()));
+                html.append("</span>");
+            }
+
+            lexer.advance();
+        }
+
+        return new Lexed(code, html, restarts);
+    }
+
+    // 后面的属性覆盖前面的属性，与编辑器的叠加顺序一致
+    private static String style(TextAttributesKey[] keys, EditorColorsScheme scheme) {
+        Color foreground = null;
+        int fontType = Font.PLAIN;
+
+        for (TextAttributesKey key : keys) {
+            TextAttributes attributes = scheme.getAttributes(key);
+
+            if (attributes == null) {
+                continue;
+            }
+
+            if (attributes.getForegroundColor() != null) {
+                foreground = attributes.getForegroundColor();
+            }
+
+            if (attributes.getFontType() != Font.PLAIN) {
+                fontType = attributes.getFontType();
+            }
+        }
+
+        StringBuilder style = new StringBuilder();
+
+        if (foreground != null) {
+            style.append(String.format("color:#%06x;", foreground.getRGB() & 0xFFFFFF));
+        }
+
+        if ((fontType & Font.BOLD) != 0) {
+            style.append("font-weight:bold;");
+        }
+
+        if ((fontType & Font.ITALIC) != 0) {
+            style.append("font-style:italic;");
+        }
+
+        return style.toString();
+    }
+
+    private static SyntaxHighlighter highlighter(String languageName) {
+        if (languageName == null || languageName.isEmpty() || ApplicationManager.getApplication() == null) {
+            return null;
+        }
+
+        Language language = LANGUAGES.computeIfAbsent(languageName, CodeHighlighter::findLanguage);
+
+        return language == Language.ANY ? null : SyntaxHighlighterFactory.getSyntaxHighlighter(language, null, null);
+    }
+
+    // 先按语言 ID 查找，再按扩展名查找
+    private static Language findLanguage(String languageName) {
+        String name = languageName.toLowerCase(Locale.ROOT);
+        name = ALIASES.getOrDefault(name, name);
+
+        for (Language language : Language.getRegisteredLanguages()) {
+            if (language.getID().equalsIgnoreCase(name)) {
+                return language;
+            }
+        }
+
+        FileType fileType = FileTypeManager.getInstance().getFileTypeByExtension(name);
+
+        return fileType instanceof LanguageFileType languageFileType ? languageFileType.getLanguage() : Language.ANY;
+    }
+
+    private static void put(String key, String html) {
+        synchronized (CACHE) {
+            String previous = CACHE.put(key, html);
+            cachedChars += html.length() - (previous == null ? 0 : previous.length());
+
+            Iterator<String> iterator = CACHE.values().iterator();
+
+            while (cachedChars > MAX_CACHED_CHARS && iterator.hasNext()) {
+                cachedChars -= iterator.next().length();
+                iterator.remove();
+            }
+        }
+    }
+
+    public static StringBuilder escape(StringBuilder html, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            switch (c) {
+                case '<' -> html.append("&lt;");
+                case '>' -> html.append("&gt;");
+                case '&' -> html.append("&amp;");
+                case '"' -> html.append("&quot;");
+                default -> html.append(c);
+            }
+        }
+
+        return html;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sohocn.deep.seek.coder.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+
+/**
+ * 在后台线程把 HTML 解析为 HTMLDocument，EDT 上只需要调用 JEditorPane.setDocument 替换文档。
+ * <p>
+ * 与 JEditorPane.setText 的做法相同：用 HTMLEditorKit 新建文档再同步读入，文档交给界面之前不会被其它线程访问。
+ */
+public class HtmlDocumentUtil {
+    private static final HTMLEditorKit KIT = new HTMLEditorKit();
+
+    // 可以在任意线程调用
+    public static HTMLDocument build(String html) {
+        HTMLDocument document = (HTMLDocument)KIT.createDefaultDocument();
+        document.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+
+        try {
+            KIT.read(new StringReader(html), document, 0);
+        } catch (IOException | BadLocationException e) {
+            // 只从内存中读取，不会发生
+            throw new IllegalStateException(e);
+        }
+
+        return document;
+    }
+}
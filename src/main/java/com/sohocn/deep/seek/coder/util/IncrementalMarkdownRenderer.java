@@ -0,0 +1,100 @@
+package com.sohocn.deep.seek.coder.util;
+
+import java.util.List;
+
+import org.intellij.markdown.MarkdownTokenTypes;
+import org.intellij.markdown.ast.ASTNode;
+
+/**
+ * 流式回答的增量 Markdown 渲染。
+ * <p>
+ * 已经结束的顶层块（后面已经出现了新的块）只渲染一次并缓存 HTML，每次追加只重新解析最后一个未结束的块，
+ * 例如还在增长的段落、列表或未闭合的代码块。未闭合代码块的高亮结果保存在这个实例中，下一次从上次的位置继续。非线程安全。
+ */
+public class IncrementalMarkdownRenderer {
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder closedHtml = new StringBuilder();
+    private final CodeHighlighter.Growing growing = new CodeHighlighter.Growing();
+
+    // text 中已结束部分的长度
+    private int closedOffset;
+    private String html = "";
+
+    // 追加一段内容并返回完整的 HTML
+    public String append(String delta) {
+        text.append(delta);
+
+        try {
+            html = render();
+        } catch (Exception e) {
+            // 增量解析失败时退回到整体渲染
+            html = MarkdownUtil.render(text.toString());
+        }
+
+        return html;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    // 最近一次 append 返回的 HTML
+    public String getHtml() {
+        return html;
+    }
+
+    public void reset() {
+        text.setLength(0);
+        closedHtml.setLength(0);
+        closedOffset = 0;
+        html = "";
+        growing.clear();
+    }
+
+    private String render() {
+        String open = text.substring(closedOffset);
+
+        if (open.isEmpty()) {
+            return closedHtml.length() == 0 ? "" : "<body>" + closedHtml + "</body>";
+        }
+
+        List<ASTNode> children = MarkdownUtil.parse(open).getChildren();
+
+        // 最后一个块可能还在增长，之前的块都已结束
+        int lastBlock = children.size() - 1;
+
+        while (lastBlock >= 0 && isWhitespace(children.get(lastBlock))) {
+            lastBlock--;
+        }
+
+        // 从最后一个块所在行的行首切分，避免缩进被截断后改变块的类型
+        int cut = 0;
+
+        if (lastBlock > 0) {
+            cut = open.lastIndexOf('\n', children.get(lastBlock).getStartOffset() - 1) + 1;
+        }
+
+        // 先渲染到局部变量，全部成功后再同时提交 closedHtml 和 closedOffset，渲染失败时状态不变
+        StringBuilder newlyClosed = new StringBuilder();
+        StringBuilder openHtml = new StringBuilder();
+
+        for (ASTNode child : children) {
+            String html = MarkdownUtil.renderNode(open, child, growing);
+
+            if (child.getEndOffset() <= cut) {
+                newlyClosed.append(html);
+            } else {
+                openHtml.append(html);
+            }
+        }
+
+        closedHtml.append(newlyClosed);
+        closedOffset += cut;
+
+        return "<body>" + closedHtml + openHtml + "</body>";
+    }
+
+    private static boolean isWhitespace(ASTNode node) {
+        return node.getType() == MarkdownTokenTypes.EOL || node.getType() == MarkdownTokenTypes.WHITE_SPACE;
+    }
+}
@@ -0,0 +1,139 @@
+package com.sohocn.deep.seek.coder.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按总字符数限制大小的 LRU 缓存，键为字符串，超出上限时淘汰最久未使用的条目。线程安全。
+ * <p>
+ * 可以写入文件再读回：文件中依次为版本号、条目数和每个条目的 [键][值]，字符串按 [长度][UTF-8 内容] 写入，
+ * 条目按最久未使用到最近使用的顺序排列，读回后保持相同的淘汰顺序。
+ */
+public class LruCache<V> {
+    // 条目值的读写方式
+    public interface Codec<V> {
+        void write(DataOutputStream out, V value) throws IOException;
+
+        V read(DataInputStream in) throws IOException;
+    }
+
+    private final Map<String, V> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxChars;
+    private final ToIntFunction<V> length;
+    private long totalChars;
+
+    public LruCache(long maxChars, ToIntFunction<V> length) {
+        this.maxChars = maxChars;
+        this.length = length;
+    }
+
+    public synchronized V get(String key) {
+        return cache.get(key);
+    }
+
+    public synchronized void put(String key, V value) {
+        remove(key);
+        cache.put(key, value);
+        totalChars += length.applyAsInt(value);
+
+        Iterator<V> iterator = cache.values().iterator();
+
+        while (totalChars > maxChars && iterator.hasNext()) {
+            totalChars -= length.applyAsInt(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    public synchronized void remove(String key) {
+        V previous = cache.remove(key);
+
+        if (previous != null) {
+            totalChars -= length.applyAsInt(previous);
+        }
+    }
+
+    public synchronized void removeIf(Predicate<V> filter) {
+        Iterator<V> iterator = cache.values().iterator();
+
+        while (iterator.hasNext()) {
+            V value = iterator.next();
+
+            if (filter.test(value)) {
+                totalChars -= length.applyAsInt(value);
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        totalChars = 0;
+    }
+
+    // 读取 save 写入的文件，文件不存在或版本不同时忽略。已经在缓存中的键优先，不会被文件中的旧值覆盖
+    public void load(Path file, int version, Codec<V> codec) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != version) {
+                return;
+            }
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                V value = codec.read(in);
+
+                synchronized (this) {
+                    if (!cache.containsKey(key)) {
+                        put(key, value);
+                    }
+                }
+            }
+        }
+    }
+
+    // 先写入临时文件再替换，写入中断时保留原来的文件
+    public void save(Path file, int version, Codec<V> codec) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            synchronized (this) {
+                out.writeInt(version);
+                out.writeInt(cache.size());
+
+                for (Map.Entry<String, V> entry : cache.entrySet()) {
+                    writeString(out, entry.getKey());
+                    codec.write(out, entry.getValue());
+                }
+            }
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -1,62 +1,171 @@
 package com.sohocn.deep.seek.coder.util;
 
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.intellij.markdown.IElementType;
+import org.intellij.markdown.MarkdownElementTypes;
+import org.intellij.markdown.MarkdownTokenTypes;
 import org.intellij.markdown.ast.ASTNode;
+import org.intellij.markdown.flavours.MarkdownFlavourDescriptor;
 import org.intellij.markdown.flavours.commonmark.CommonMarkFlavourDescriptor;
+import org.intellij.markdown.html.GeneratingProvider;
 import org.intellij.markdown.html.HtmlGenerator;
+import org.intellij.markdown.parser.LinkMap;
 import org.intellij.markdown.parser.MarkdownParser;
 import org.jetbrains.annotations.NotNull;
 
 public class MarkdownUtil {
+    // 渲染结果发生变化时递增，使已缓存的 HTML 失效
+    public static final int RENDERER_VERSION = 2;
+
+    private static final int MAX_FENCE_INDENT = 10;
+
+    // 当前线程正在渲染的流式输出中还在增长的代码块，HtmlGenerator 的回调无法直接传递参数
+    private static final ThreadLocal<CodeHighlighter.Growing> GROWING = new ThreadLocal<>();
+
+    // 代码块交给 CodeHighlighter 高亮，其余元素沿用 CommonMark 的渲染
+    private static final MarkdownFlavourDescriptor FLAVOUR = new CommonMarkFlavourDescriptor() {
+        @Override
+        public @NotNull Map<IElementType, GeneratingProvider> createHtmlGeneratingProviders(@NotNull LinkMap linkMap,
+            URI baseURI) {
+            Map<IElementType, GeneratingProvider> providers =
+                new HashMap<>(super.createHtmlGeneratingProviders(linkMap, baseURI));
+            providers.put(MarkdownElementTypes.CODE_FENCE, MarkdownUtil::renderCodeFence);
+
+            return providers;
+        }
+    };
+
+    // 自定义 TagRenderer
+    private static final HtmlGenerator.TagRenderer TAG_RENDERER = new HtmlGenerator.TagRenderer() {
+        @Override
+        public @NotNull CharSequence printHtml(@NotNull CharSequence charSequence) {
+            return charSequence;
+        }
+
+        @Override
+        public @NotNull CharSequence openTag(@NotNull ASTNode astNode, @NotNull CharSequence charSequence,
+            @NotNull CharSequence[] charSequences, boolean b) {
+            StringBuilder tagBuilder = new StringBuilder();
+            tagBuilder.append("<").append(charSequence);
+
+            // 添加属性
+            for (CharSequence attr : charSequences) {
+                tagBuilder.append(" ").append(attr);
+            }
+
+            // 如果是自闭合标签，添加 "/>"
+            if (b) {
+                tagBuilder.append(" />");
+            } else {
+                tagBuilder.append(">");
+            }
+
+            return tagBuilder.toString();
+        }
+
+        @Override
+        public @NotNull CharSequence closeTag(@NotNull CharSequence charSequence) {
+            return "</" + charSequence + ">";
+        }
+    };
+
     public static String render(String markdownText) {
         try {
             if (markdownText.isEmpty()) {
                 return "";
             }
 
-            // 创建 Markdown 解析器
-            MarkdownParser parser = new MarkdownParser(new CommonMarkFlavourDescriptor());
-            ASTNode ast = parser.buildMarkdownTreeFromString(markdownText);
-
-            // 自定义 TagRenderer
-            HtmlGenerator.TagRenderer tagRenderer = new HtmlGenerator.TagRenderer() {
-                @Override
-                public @NotNull CharSequence printHtml(@NotNull CharSequence charSequence) {
-                    return charSequence;
-                }
-
-                @Override
-                public @NotNull CharSequence openTag(@NotNull ASTNode astNode, @NotNull CharSequence charSequence,
-                    @NotNull CharSequence[] charSequences, boolean b) {
-                    StringBuilder tagBuilder = new StringBuilder();
-                    tagBuilder.append("<").append(charSequence);
-
-                    // 添加属性
-                    for (CharSequence attr : charSequences) {
-                        tagBuilder.append(" ").append(attr);
-                    }
-
-                    // 如果是自闭合标签，添加 "/>"
-                    if (b) {
-                        tagBuilder.append(" />");
-                    } else {
-                        tagBuilder.append(">");
-                    }
-
-                    return tagBuilder.toString();
-                }
-
-                @Override
-                public @NotNull CharSequence closeTag(@NotNull CharSequence charSequence) {
-                    return "</" + charSequence + ">";
-                }
-            };
-
             // 生成 HTML
-            return new HtmlGenerator(markdownText, ast, new CommonMarkFlavourDescriptor(), false)
-                .generateHtml(tagRenderer);
+            return renderNode(markdownText, parse(markdownText));
         } catch (Exception e) {
             // 如果发生异常，返回原始 Markdown 文本
             return markdownText;
         }
     }
-}
\ No newline at end of file
+
+    public static ASTNode parse(String markdownText) {
+        return new MarkdownParser(FLAVOUR).buildMarkdownTreeFromString(markdownText);
+    }
+
+    // 与 CommonMark 的代码块渲染结构相同，只是内容换成高亮后的 HTML；没有结束标记的代码块视为还在增长
+    private static void renderCodeFence(HtmlGenerator.HtmlGeneratingVisitor visitor, String text, ASTNode node) {
+        List<ASTNode> children = node.getChildren();
+        boolean complete = !children.isEmpty()
+            && children.get(children.size() - 1).getType() == MarkdownTokenTypes.CODE_FENCE_END;
+        int indent = indentOf(text, node.getStartOffset());
+
+        String language = "";
+        StringBuilder code = new StringBuilder(node.getEndOffset() - node.getStartOffset());
+        boolean inContent = false;
+        boolean lastChildWasContent = false;
+
+        for (ASTNode child : complete ? children.subList(0, children.size() - 1) : children) {
+            IElementType type = child.getType();
+
+            if (inContent && (type == MarkdownTokenTypes.CODE_FENCE_CONTENT || type == MarkdownTokenTypes.EOL)) {
+                code.append(trimIndent(text, child.getStartOffset(), child.getEndOffset(), indent));
+                lastChildWasContent = type == MarkdownTokenTypes.CODE_FENCE_CONTENT;
+            } else if (!inContent && type == MarkdownTokenTypes.FENCE_LANG) {
+                language = text.substring(child.getStartOffset(), child.getEndOffset()).trim().split("\\s+")[0];
+            } else if (!inContent && type == MarkdownTokenTypes.EOL) {
+                inContent = true;
+            }
+        }
+
+        StringBuilder html = new StringBuilder("<pre><code");
+
+        if (!language.isEmpty()) {
+            CodeHighlighter.escape(html.append(" class=\"language-"), language).append('"');
+        }
+
+        html.append('>').append(CodeHighlighter.highlight(language, code.toString(), complete, GROWING.get()));
+
+        if (lastChildWasContent) {
+            html.append('\n');
+        }
+
+        visitor.consumeHtml(html.append("</code></pre>"));
+    }
+
+    // 代码块起始标记前的缩进，内容每行去掉同样多的空格
+    private static int indentOf(String text, int offset) {
+        int indent = 0;
+
+        while (indent < MAX_FENCE_INDENT && offset + indent < text.length() && text.charAt(offset + indent) == ' ') {
+            indent++;
+        }
+
+        return indent;
+    }
+
+    private static String trimIndent(String text, int start, int end, int indent) {
+        int trimmed = 0;
+
+        while (trimmed < indent && start < end && text.charAt(start) == ' ') {
+            start++;
+            trimmed++;
+        }
+
+        return text.substring(start, end);
+    }
+
+    // 渲染语法树中的单个节点，节点偏移量相对于 markdownText
+    public static String renderNode(String markdownText, ASTNode node) {
+        return renderNode(markdownText, node, null);
+    }
+
+    // 流式输出时传入这次输出的 growing，还在增长的代码块从上一次的分析结果继续高亮
+    public static String renderNode(String markdownText, ASTNode node, CodeHighlighter.Growing growing) {
+        GROWING.set(growing);
+
+        try {
+            return new HtmlGenerator(markdownText, node, FLAVOUR, false).generateHtml(TAG_RENDERER);
+        } finally {
+            GROWING.remove();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.sohocn.deep.seek.coder.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class DeltaExtractorTest {
+    private final DeltaExtractor extractor = new DeltaExtractor();
+
+    @Test
+    void extractsContentFromCompactChunk() {
+        assertTrue(extract("{\"id\":\"x\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"hi\"}}]}"));
+        assertEquals("hi", extractor.getContent());
+        assertNull(extractor.getReasoningContent());
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void extractsContentFromSpacedChunk() {
+        assertTrue(extract("{\"id\": \"x\", \"choices\": [{\"index\": 0, \"delta\": {\"content\": \"hi\"}}]}"));
+        assertEquals("hi", extractor.getContent());
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void extractsContentFromPrettyPrintedChunk() {
+        String json = """
+            {
+              "id" : "x",
+              "choices" : [
+                {
+                  "index" : 0,
+                  "delta" : {
+                    "role" : "assistant",
+                    "reasoning_content" : "think",
+                    "content" : "hi"
+                  },
+                  "finish_reason" : null
+                }
+              ],
+              "usage" : null
+            }
+            """;
+
+        assertTrue(extract(json));
+        assertEquals("hi", extractor.getContent());
+        assertEquals("think", extractor.getReasoningContent());
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void reportsNullContent() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":null,\"reasoning_content\":\"r\"}}]}"));
+        assertNull(extractor.getContent());
+        assertEquals("r", extractor.getReasoningContent());
+
+        assertTrue(extract("{\"choices\":[{\"delta\":null}]}"));
+        assertNull(extractor.getContent());
+
+        assertTrue(extract("{\"choices\":[]}"));
+        assertNull(extractor.getContent());
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"a\\\"b\\\\c\\/d\\n\\t\\r\\b\\f\"}}]}"));
+        assertEquals("a\"b\\c/d\n\t\r\b\f", extractor.getContent());
+    }
+
+    @Test
+    void decodesUnicodeEscapesAndSurrogatePairs() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"\\u4f60\\u597D \\ud83d\\ude00\"}}]}"));
+        assertEquals("你好 \uD83D\uDE00", extractor.getContent());
+    }
+
+    @Test
+    void decodesRawUtf8() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"é你😀\"}}]}"));
+        assertEquals("é你😀", extractor.getContent());
+    }
+
+    @Test
+    void skipsExtraFields() {
+        String json = "{\"id\":\"x\",\"object\":\"chunk\",\"created\":1,\"meta\":{\"a\":[1,{\"b\":\"}]\"}]},"
+            + "\"choices\":[{\"index\":0,\"logprobs\":null,\"delta\":{\"role\":\"assistant\",\"extra\":[true,false],"
+            + "\"content\":\"hi\"}},{\"index\":1,\"delta\":{\"content\":\"ignored\"}}],\"flag\":true}";
+
+        assertTrue(extract(json));
+        assertEquals("hi", extractor.getContent());
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void fallsBackOnUsage() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"\"}}],\"usage\":{\"prompt_tokens\":1}}"));
+        assertTrue(extractor.needsFullBinding());
+
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"\"}}],\"usage\": null}"));
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void fallsBackOnFinishReason() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"\"},\"finish_reason\": \"stop\"}]}"));
+        assertTrue(extractor.needsFullBinding());
+
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"\"},\"finish_reason\":null}]}"));
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void fallsBackOnEscapedKey() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"con\\u0074ent\":\"hi\"}}]}"));
+        assertTrue(extractor.needsFullBinding());
+    }
+
+    @Test
+    void rejectsMalformedChunks() {
+        assertFalse(extract("{\"choices\":[{\"delta\":{\"content\":\"hi"));
+        assertFalse(extract("[1,2]"));
+        assertFalse(extract("{\"choices\":[{\"delta\":{\"content\":\"\\x\"}}]}"));
+        assertFalse(extract(""));
+    }
+
+    @Test
+    void resetsStateBetweenChunks() {
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"content\":\"a\"},\"finish_reason\":\"stop\"}]}"));
+        assertTrue(extract("{\"choices\":[{\"delta\":{\"reasoning_content\":\"b\"}}]}"));
+        assertNull(extractor.getContent());
+        assertEquals("b", extractor.getReasoningContent());
+        assertFalse(extractor.needsFullBinding());
+    }
+
+    @Test
+    void honoursOffsetAndLength() {
+        byte[] bytes = "xx{\"choices\":[{\"delta\":{\"content\":\"hi\"}}]}yy".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(extractor.extract(bytes, 2, bytes.length - 4));
+        assertEquals("hi", extractor.getContent());
+    }
+
+    private boolean extract(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        return extractor.extract(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,164 @@
+package com.sohocn.deep.seek.coder.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SseDecoderTest {
+    private static final byte[] BOM = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+
+    @Test
+    void decodesAllLineEndings() {
+        for (String newline : new String[] {"\n", "\r\n", "\r"}) {
+            String input = "data: first" + newline + newline + "data: second" + newline + newline;
+
+            assertEquals(List.of("message||-1|first", "message||-1|second"), decodeAllSplits(bytes(input)));
+        }
+    }
+
+    @Test
+    void decodesMixedLineEndings() {
+        String input = "data: a\r\n\ndata: b\r\rdata: c\n\r\n";
+
+        assertEquals(List.of("message||-1|a", "message||-1|b", "message||-1|c"), decodeAllSplits(bytes(input)));
+    }
+
+    @Test
+    void joinsMultiLineData() {
+        String input = "data: line1\r\ndata:line2\r\ndata\r\n\r\n";
+
+        assertEquals(List.of("message||-1|line1\nline2\n"), decodeAllSplits(bytes(input)));
+    }
+
+    @Test
+    void readsEventIdAndRetryFields() {
+        String input = "event: delta\nid: 42\nretry: 3000\ndata: x\n\ndata: y\n\n";
+
+        // id 和 retry 在事件之间保留，event 只对当前事件有效
+        assertEquals(List.of("delta|42|3000|x", "message|42|3000|y"), decodeAllSplits(bytes(input)));
+    }
+
+    @Test
+    void ignoresInvalidRetryAndIdWithNul() {
+        String input = "retry: 12a\nid: a\0b\ndata: x\n\n";
+
+        assertEquals(List.of("message||-1|x"), decodeAllSplits(bytes(input)));
+    }
+
+    @Test
+    void skipsCommentsAndUnknownFields() {
+        String input = ": keep-alive\r\n\r\nfoo: bar\r\ndata: x\r\n: another\r\n\r\n";
+
+        assertEquals(List.of("message||-1|x"), decodeAllSplits(bytes(input)));
+    }
+
+    @Test
+    void skipsBomSplitAcrossFeeds() {
+        byte[] input = concat(BOM, bytes("data: x\n\n"));
+
+        assertEquals(List.of("message||-1|x"), decodeAllSplits(input));
+    }
+
+    @Test
+    void keepsBomLikeBytesThatAreNotBom() {
+        byte[] input = concat(new byte[] {(byte)0xEF, (byte)0xBB}, bytes("data: x\n\n"));
+
+        // 不完整的 BOM 属于第一行，该行的字段名无法识别而被忽略
+        assertEquals(List.of(), decodeAllSplits(input));
+    }
+
+    @Test
+    void keepsBomInLaterData() {
+        byte[] input = concat(bytes("data: "), BOM, bytes("\n\n"));
+
+        assertEquals(List.of("message||-1|\uFEFF"), decodeAllSplits(input));
+    }
+
+    @Test
+    void dropsUnterminatedEventAtEndOfStream() throws IOException {
+        List<String> events = new ArrayList<>();
+        SseDecoder decoder = new SseDecoder(event -> events.add(describe(event)));
+        decoder.decode(new ByteArrayInputStream(bytes("data: x\n\ndata: y\n")));
+
+        assertEquals(List.of("message||-1|x"), events);
+    }
+
+    @Test
+    void stopsWhenListenerReturnsFalse() {
+        List<String> events = new ArrayList<>();
+        SseDecoder decoder = new SseDecoder(event -> {
+            events.add(describe(event));
+            return false;
+        });
+        byte[] input = bytes("data: x\n\ndata: y\n\n");
+
+        assertFalse(decoder.feed(input, 0, input.length));
+        assertTrue(decoder.isStopped());
+        assertEquals(List.of("message||-1|x"), events);
+        assertEquals(input.length, decoder.getBytesRead());
+    }
+
+    // 在每一个位置把输入拆成两次输入，再逐字节输入，结果都必须与一次输入相同
+    private static List<String> decodeAllSplits(byte[] input) {
+        List<String> expected = decode(input, input.length);
+
+        for (int split = 0; split <= input.length; split++) {
+            List<String> events = new ArrayList<>();
+            SseDecoder decoder = new SseDecoder(event -> events.add(describe(event)));
+            decoder.feed(input, 0, split);
+            decoder.feed(input, split, input.length - split);
+
+            assertEquals(expected, events, "split at " + split);
+        }
+
+        assertEquals(expected, decode(input, 1), "byte by byte");
+
+        return expected;
+    }
+
+    private static List<String> decode(byte[] input, int chunkSize) {
+        List<String> events = new ArrayList<>();
+        SseDecoder decoder = new SseDecoder(event -> events.add(describe(event)));
+
+        for (int offset = 0; offset < input.length; offset += chunkSize) {
+            decoder.feed(input, offset, Math.min(chunkSize, input.length - offset));
+        }
+
+        return events;
+    }
+
+    private static String describe(SseEvent event) {
+        return event.getType() + "|" + event.getLastEventId() + "|" + event.getRetry() + "|"
+            + event.getDataAsString();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+
+        byte[] result = new byte[length];
+        int offset = 0;
+
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+
+        return result;
+    }
+}